@@ -0,0 +1,109 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/**
+ * A Writer class that appends the characters to an Appendable object.
+ * The characters are appended to a StringBuilder directly, without
+ * the lock and the copy of the Writer class.
+ *
+ * @see Kakasi#convert(CharSequence, Appendable)
+ */
+final class AppendableWriter extends Writer {
+
+    private Appendable appendable;
+    private StringBuilder builder;
+
+    /**
+     * Sets the destination object.
+     *
+     * @param newAppendable  the destination object, or null.
+     */
+    void setAppendable(Appendable newAppendable) {
+        appendable = newAppendable;
+        builder = newAppendable instanceof StringBuilder ?
+            (StringBuilder)newAppendable : null;
+    }
+
+    /**
+     * Write a single character.
+     *
+     * @param c  int specifying a character to be written.
+     * @exception  IOException  If an I/O error occurs
+     */
+    public void write(int c) throws IOException {
+        if (builder != null) {
+            builder.append((char)c);
+        } else {
+            appendable.append((char)c);
+        }
+    }
+
+    /**
+     * Write a portion of an array of characters.
+     *
+     * @param cbuf  Array of characters
+     * @param off  Offset from which to start writing characters
+     * @param len  Number of characters to write
+     * @exception  IOException  If an I/O error occurs
+     */
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if (builder != null) {
+            builder.append(cbuf, off, len);
+        } else {
+            appendable.append(CharBuffer.wrap(cbuf, off, len));
+        }
+    }
+
+    /**
+     * Write a portion of a string.
+     *
+     * @param str  A String
+     * @param off  Offset from which to start writing characters
+     * @param len  Number of characters to write
+     * @exception  IOException  If an I/O error occurs
+     */
+    public void write(String str, int off, int len) throws IOException {
+        if (builder != null) {
+            builder.append(str, off, off + len);
+        } else {
+            appendable.append(str, off, off + len);
+        }
+    }
+
+    /**
+     * Flush the destination object if it is flushable.
+     *
+     * @exception  IOException  If an I/O error occurs
+     */
+    public void flush() throws IOException {
+        if (appendable instanceof Flushable) {
+            ((Flushable)appendable).flush();
+        }
+    }
+
+    /**
+     * The destination object is not closed.
+     */
+    public void close() {
+    }
+
+}
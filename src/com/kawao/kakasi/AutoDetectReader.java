@@ -0,0 +1,306 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * A Reader class that detects the Japanese encoding of the stream.
+ * The encoding is detected once from a prefix of the stream, and the
+ * rest is decoded by the decoder of the detected encoding. The
+ * "JISAutoDetect" decoder, which detects the encoding while decoding,
+ * is used only if the prefix does not tell the encoding.
+ * <p>
+ * UTF-8, EUC-JP, Shift_JIS and ISO-2022-JP are detected. If the prefix
+ * is valid in both EUC-JP and Shift_JIS, EUC-JP is chosen.
+ * <p>
+ * The prefix is read on the first read, and a read from the terminal
+ * stops at the end of a line, so that the input is not waited for.
+ *
+ * @see KanwaDictionary#load(String)
+ */
+class AutoDetectReader extends Reader {
+
+    /** The name of the encoding that is detected */
+    static final String AUTO_DETECT = "JISAutoDetect";
+
+    /** The maximum size of the prefix */
+    private static final int PREFIX_SIZE = 8192;
+
+    private final InputStream in;
+    private Reader reader;
+
+    /**
+     * Constructs an AutoDetectReader object.
+     *
+     * @param in  the input stream.
+     */
+    AutoDetectReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Tests whether the specified encoding name asks the detection.
+     * The names are "JISAutoDetect", "x-JISAutoDetect" and "auto".
+     *
+     * @param encoding  the encoding name.
+     */
+    static boolean isAutoDetect(String encoding) {
+        return encoding.equalsIgnoreCase(AUTO_DETECT) ||
+            encoding.equalsIgnoreCase("x-" + AUTO_DETECT) ||
+            encoding.equalsIgnoreCase("auto");
+    }
+
+    /**
+     * Creates a reader of the specified encoding. If the encoding asks
+     * the detection, an AutoDetectReader object is created.
+     *
+     * @param in  the input stream.
+     * @param encoding  the encoding name.
+     * @return  the reader object.
+     * @exception  IOException  if the encoding is not supported.
+     */
+    static Reader createReader(InputStream in, String encoding)
+        throws IOException {
+        if (isAutoDetect(encoding)) {
+            return new AutoDetectReader(in);
+        }
+        return new InputStreamReader(in, encoding);
+    }
+
+    /**
+     * Detects the encoding of the specified file from its prefix.
+     *
+     * @param file  the file.
+     * @return  the encoding name. If the prefix does not tell the
+     *           encoding, "JISAutoDetect" is returned.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    static String detect(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] prefix = new byte[PREFIX_SIZE];
+            int length = readPrefix(in, prefix);
+            String encoding = detect(prefix, length);
+            return encoding == null ? AUTO_DETECT : encoding;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads the prefix of the stream. The reading stops when the prefix
+     * is full, the end of the stream has been reached, or a line has been
+     * read and no more bytes are available without blocking.
+     *
+     * @param in  the input stream.
+     * @param prefix  the destination buffer.
+     * @return  the length of the prefix.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private static int readPrefix(InputStream in, byte[] prefix)
+        throws IOException {
+        int length = 0;
+        while (length < prefix.length) {
+            int count = in.read(prefix, length, prefix.length - length);
+            if (count < 0) {
+                break;
+            }
+            length += count;
+            if (count > 0 && prefix[length - 1] == '\n' &&
+                in.available() == 0) {
+                break;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Detects the encoding from the specified bytes. An incomplete
+     * character at the end is ignored.
+     *
+     * @param bytes  the prefix of the stream.
+     * @param length  the length of the prefix.
+     * @return  the encoding name, or null if the bytes do not tell the
+     *           encoding.
+     */
+    static String detect(byte[] bytes, int length) {
+        if (length >= 3 && (bytes[0] & 0xff) == 0xef &&
+            (bytes[1] & 0xff) == 0xbb && (bytes[2] & 0xff) == 0xbf) {
+            return "UTF-8";
+        }
+        boolean ascii = true;
+        for (int index = 0; index < length; index++) {
+            int b = bytes[index] & 0xff;
+            if (b == 0x1b && index + 1 < length &&
+                (bytes[index + 1] == '$' || bytes[index + 1] == '(')) {
+                return "ISO-2022-JP";
+            }
+            if (b >= 0x80) {
+                ascii = false;
+            }
+        }
+        if (ascii) {
+            return null;
+        }
+        if (isUtf8(bytes, length)) {
+            return "UTF-8";
+        }
+        if (isEucJp(bytes, length)) {
+            return "EUC-JP";
+        }
+        if (isShiftJis(bytes, length)) {
+            return "Shift_JIS";
+        }
+        return null;
+    }
+
+    /**
+     * Tests whether the bytes are valid in UTF-8.
+     */
+    private static boolean isUtf8(byte[] bytes, int length) {
+        for (int index = 0; index < length;) {
+            int b = bytes[index++] & 0xff;
+            int trail;
+            if (b < 0x80) {
+                continue;
+            } else if (b >= 0xc2 && b <= 0xdf) {
+                trail = 1;
+            } else if (b >= 0xe0 && b <= 0xef) {
+                trail = 2;
+            } else if (b >= 0xf0 && b <= 0xf4) {
+                trail = 3;
+            } else {
+                return false;
+            }
+            for (; trail > 0 && index < length; trail--) {
+                if ((bytes[index++] & 0xc0) != 0x80) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tests whether the bytes are valid in EUC-JP.
+     */
+    private static boolean isEucJp(byte[] bytes, int length) {
+        for (int index = 0; index < length;) {
+            int b = bytes[index++] & 0xff;
+            if (b < 0x80) {
+                continue;
+            }
+            int trail;
+            int low = 0xa1;
+            int high = 0xfe;
+            if (b >= 0xa1 && b <= 0xfe) {
+                trail = 1;
+            } else if (b == 0x8e) {	// half-width katakana
+                trail = 1;
+                high = 0xdf;
+            } else if (b == 0x8f) {	// JIS X 0212
+                trail = 2;
+            } else {
+                return false;
+            }
+            for (; trail > 0 && index < length; trail--) {
+                int t = bytes[index++] & 0xff;
+                if (t < low || t > high) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tests whether the bytes are valid in Shift_JIS.
+     */
+    private static boolean isShiftJis(byte[] bytes, int length) {
+        for (int index = 0; index < length;) {
+            int b = bytes[index++] & 0xff;
+            if (b < 0x80 || (b >= 0xa1 && b <= 0xdf)) {
+                continue;
+            }
+            if (!((b >= 0x81 && b <= 0x9f) || (b >= 0xe0 && b <= 0xfc))) {
+                return false;
+            }
+            if (index < length) {
+                int t = bytes[index++] & 0xff;
+                if (t < 0x40 || t == 0x7f || t > 0xfc) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Detects the encoding from the prefix, and creates the reader of
+     * the encoding.
+     *
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private void detect() throws IOException {
+        BufferedInputStream buffered =
+            new BufferedInputStream(in, PREFIX_SIZE);
+        buffered.mark(PREFIX_SIZE);
+        byte[] prefix = new byte[PREFIX_SIZE];
+        int length = readPrefix(buffered, prefix);
+        buffered.reset();
+        String encoding = detect(prefix, length);
+        reader = new InputStreamReader(
+            buffered, encoding == null ? AUTO_DETECT : encoding);
+    }
+
+    /**
+     * Read characters into a portion of an array.
+     *
+     * @param cbuf  Destination buffer
+     * @param off  Offset at which to start storing characters
+     * @param len  Maximum number of characters to read
+     * @return  The number of characters read, or -1 if the end of the
+     *           stream has been reached
+     * @exception  IOException  If an I/O error occurs
+     */
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (reader == null) {
+            detect();
+        }
+        return reader.read(cbuf, off, len);
+    }
+
+    /**
+     * Close the stream.
+     *
+     * @exception  IOException  If an I/O error occurs
+     */
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+        } else {
+            in.close();
+        }
+    }
+
+}
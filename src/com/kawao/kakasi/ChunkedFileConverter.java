@@ -0,0 +1,300 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class converts a file to another file by splitting the input file
+ * into chunks, and converting the chunks on a pool of threads.
+ * <p>
+ * The input file is memory-mapped. A chunk ends just after a newline
+ * where the conversion never reads over, so the result is the same as
+ * converting the whole file at once. Each thread converts the chunks
+ * with its own session of the engine, and the results are written
+ * in the order of the chunks.
+ * <p>
+ * The file is split only if the input encoding writes the newline as
+ * the single byte that never appears in other characters, like UTF-8,
+ * EUC-JP and Shift_JIS. Otherwise the whole file is one chunk.
+ *
+ * @see KakasiEngine#isBreakable(int, char)
+ */
+class ChunkedFileConverter {
+
+    /** The size of a chunk that the split point is searched from */
+    private static final int CHUNK_SIZE = 4 << 20;
+
+    /** The size of a region mapped to search the split point */
+    private static final int SCAN_SIZE = 64 << 10;
+
+    private final KakasiEngine engine;
+    private final Charset inputCharset;
+    private final Charset outputCharset;
+    private final int threadCount;
+    private final boolean splittable;
+    private final int asciiLimit;
+
+    private final ThreadLocal workers = new ThreadLocal() {
+            protected Object initialValue() {
+                return new Worker();
+            }
+        };
+
+    /**
+     * Constructs a ChunkedFileConverter object.
+     *
+     * @param engine  the engine that converts the chunks.
+     * @param inputCharset  the character set of the source files.
+     * @param outputCharset  the character set of the destination files.
+     * @param threadCount  the number of threads.
+     */
+    ChunkedFileConverter(KakasiEngine engine, Charset inputCharset,
+                         Charset outputCharset, int threadCount) {
+        this.engine = engine;
+        this.inputCharset = inputCharset;
+        this.outputCharset = outputCharset;
+        this.threadCount = threadCount;
+        splittable = isSplittable(inputCharset);
+        // in the other encodings a byte from 0x40 may be a second byte
+        String name = inputCharset.name();
+        asciiLimit = name.equals("UTF-8") || name.equals("EUC-JP") ||
+            name.equals("US-ASCII") ? 0x80 : 0x40;
+    }
+
+    /**
+     * Tests whether the newline in the specified character set is the
+     * single byte that never appears in other characters.
+     *
+     * @param charset  the character set.
+     */
+    private static boolean isSplittable(Charset charset) {
+        if (!charset.canEncode() || charset.name().startsWith("ISO-2022")) {
+            return false;
+        }
+        try {
+            ByteBuffer newline =
+                charset.newEncoder().encode(CharBuffer.wrap("\n"));
+            return newline.remaining() == 1 && newline.get() == '\n';
+        } catch (CharacterCodingException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Converts the source file, and writes the result to the destination
+     * file.
+     *
+     * @param source  the source file.
+     * @param destination  the destination file.
+     * @return  the number of bytes read from the source file.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    long convert(File source, File destination) throws IOException {
+        FileInputStream in = new FileInputStream(source);
+        try {
+            FileOutputStream out = new FileOutputStream(destination);
+            try {
+                return convert(in.getChannel(), out.getChannel());
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Converts the chunks of the input channel on the threads, and writes
+     * the results to the output channel in order. At most two chunks for
+     * each thread are converted or waiting to be written at a time.
+     *
+     * @param in  the input channel.
+     * @param out  the output channel.
+     * @return  the number of bytes read from the input channel.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private long convert(FileChannel in, FileChannel out)
+        throws IOException {
+        long size = in.size();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            LinkedList results = new LinkedList();
+            long position = 0;
+            while (position < size) {
+                long end = findSplit(in, position, size);
+                results.add(executor.submit(
+                                new ChunkTask(in, position, end)));
+                position = end;
+                if (results.size() >= threadCount * 2) {
+                    write(out, (Future)results.removeFirst());
+                }
+            }
+            while (!results.isEmpty()) {
+                write(out, (Future)results.removeFirst());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return size;
+    }
+
+    /**
+     * Finds the end of the chunk starting at the specified position.
+     * The chunk ends just after the first breakable newline from the
+     * chunk size.
+     *
+     * @param channel  the input channel.
+     * @param position  the start of the chunk.
+     * @param size  the size of the input.
+     * @return  the end of the chunk.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private long findSplit(FileChannel channel, long position, long size)
+        throws IOException {
+        long scanStart = position + CHUNK_SIZE;
+        if (!splittable || scanStart >= size) {
+            return size;
+        }
+        int previous = -1;
+        while (scanStart < size) {
+            int length = (int)Math.min(SCAN_SIZE, size - scanStart);
+            ByteBuffer bytes =
+                channel.map(FileChannel.MapMode.READ_ONLY, scanStart, length);
+            for (int index = 0; index < length; index++) {
+                int b = bytes.get(index) & 0xff;
+                if (b == '\n' && engine.isBreakable(previous, '\n')) {
+                    return scanStart + index + 1;
+                }
+                if (b >= asciiLimit) {
+                    previous = -1;
+                } else if (!Character.isWhitespace((char)b)) {
+                    previous = b;
+                }
+            }
+            scanStart += length;
+        }
+        return size;
+    }
+
+    /**
+     * Writes the result of the chunk to the channel.
+     *
+     * @param channel  the output channel.
+     * @param result  the result of the chunk task.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private static void write(FileChannel channel, Future result)
+        throws IOException {
+        ByteBuffer bytes = (ByteBuffer)Kakasi.getResult(result);
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    /**
+     * Task that converts a chunk.
+     */
+    private class ChunkTask implements Callable {
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+
+        ChunkTask(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        public Object call() throws IOException {
+            ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY,
+                                           start, end - start);
+            return ((Worker)workers.get()).convert(bytes);
+        }
+
+    }
+
+    /**
+     * The objects used by a thread.
+     */
+    private class Worker {
+
+        private final KakasiSession session = engine.getSession();
+        private final CharsetDecoder decoder = inputCharset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharsetEncoder encoder = outputCharset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final StringBuilder builder = new StringBuilder();
+        private CharBuffer chars = CharBuffer.allocate(0);
+        private char[] result = new char[0];
+
+        /**
+         * Decodes, converts and encodes the chunk.
+         *
+         * @param bytes  the bytes of the chunk.
+         * @return  the encoded result.
+         * @exception  IOException  if an I/O error occurred.
+         */
+        ByteBuffer convert(ByteBuffer bytes) throws IOException {
+            int capacity =
+                (int)(bytes.remaining() * decoder.maxCharsPerByte()) + 1;
+            if (chars.capacity() < capacity) {
+                chars = CharBuffer.allocate(capacity);
+            }
+            chars.clear();
+            decoder.reset();
+            while (decoder.decode(bytes, chars, true).isOverflow() ||
+                   decoder.flush(chars).isOverflow()) {
+                CharBuffer newChars =
+                    CharBuffer.allocate(chars.capacity() * 2);
+                chars.flip();
+                newChars.put(chars);
+                chars = newChars;
+                decoder.reset();
+            }
+            builder.setLength(0);
+            session.convert(chars.array(), 0, chars.position(), builder);
+            int length = builder.length();
+            if (result.length < length) {
+                result = new char[length];
+            }
+            builder.getChars(0, length, result, 0);
+            encoder.reset();
+            return encoder.encode(CharBuffer.wrap(result, 0, length));
+        }
+
+    }
+
+}
@@ -33,7 +33,7 @@ class CompoundConverter implements Converter {
     private final Converter front;
     private final Converter back;
 
-    private final KanjiInput pipeInput = new KanjiInput();
+    private final KanjiInput pipeInput = new LocalKanjiInput();
     private final Writer pipeOutput = pipeInput.createConnectedWriter();
 
     /**
@@ -50,6 +50,8 @@ class CompoundConverter implements Converter {
     /**
      * Converts the string form the specified input object
      * and output the result to the specified writer.
+     * The characters that the back converter does not convert are
+     * written as markup, because they are written by the front converter.
      *
      * @param input  the input object.
      * @param output  the output writer object.
@@ -62,7 +64,7 @@ class CompoundConverter implements Converter {
         if (ret) {
             while (pipeInput.get() >= 0) {
                 if (!back.convert(pipeInput, output)) {
-                    output.write((char)pipeInput.get());
+                    KanjiOutput.writeMarkup(output, pipeInput.get());
                     pipeInput.consume(1);
                 }
             }
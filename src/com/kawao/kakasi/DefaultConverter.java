@@ -22,12 +22,38 @@ import java.io.IOException;
 
 /**
  * This class is a default implementation of Converter interface.
+ * An object of this class reuses its buffer, so it must be used by one
+ * thread at a time.
  * 
  * @author  Kawao, Tomoyuki (kawao@kawao.com)
  * @version $Revision: 1.1 $ $Date: 2003/01/01 08:18:44 $
  */
 class DefaultConverter implements Converter {
 
+    /** The number of characters written to the output at a time */
+    private static final int RUN_SIZE = 256;
+
+    private final boolean asciiMode;
+    private final char[] run = new char[RUN_SIZE];
+
+    /**
+     * Constructs a DefaultConverter object.
+     */
+    DefaultConverter() {
+        this(false);
+    }
+
+    /**
+     * Constructs a DefaultConverter object.
+     *
+     * @param asciiMode  if true, the ASCII characters are not written with
+     *                   the other characters, so that they are converted
+     *                   by the ascii converter.
+     */
+    DefaultConverter(boolean asciiMode) {
+        this.asciiMode = asciiMode;
+    }
+
     /**
      * Converts the string form the specified input object
      * and output the result to the specified writer.
@@ -44,9 +70,20 @@ class DefaultConverter implements Converter {
             return false;
         }
         Character.UnicodeBlock pblock = Character.UnicodeBlock.of((char)ch);
+        int runLength = 0;
         while (true) {
             input.consume(1);
-            output.write((char)ch);
+            if (runLength == run.length) {
+                output.write(run, 0, runLength);
+                runLength = 0;
+            }
+            run[runLength++] = (char)ch;
+            if (!input.isBuffered()) {
+                // the next character may block, so the run is written
+                // now to keep the auto flush of the output in time
+                output.write(run, 0, runLength);
+                runLength = 0;
+            }
             ch = input.get();
             if (ch < 0) {
                 break;
@@ -66,6 +103,12 @@ class DefaultConverter implements Converter {
             if (isJapanese(block) != isJapanese(pblock)) {
             	break;
             }
+            if (asciiMode && ch < 0x80) {
+                break;
+            }
+        }
+        if (runLength > 0) {
+            output.write(run, 0, runLength);
         }
         return true;
     }
@@ -0,0 +1,273 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * This class converts a file to another file through file channels.
+ * The bytes read from the channel are decoded directly into the window
+ * of the input object, and the result is encoded into a direct buffer
+ * that is written to the channel. The decoder, the encoder and the
+ * buffers are reused for all files, which are converted by one session.
+ * <p>
+ * Malformed and unmappable characters are replaced, as the
+ * InputStreamReader and the OutputStreamWriter do.
+ *
+ * @see Kakasi#main(String[])
+ */
+class FileConverter {
+
+    /** The size of the byte buffers */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final KakasiSession session;
+    private final CharsetDecoder decoder;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer inputBytes =
+        ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer outputBytes =
+        ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharBuffer outputChars =
+        CharBuffer.allocate(BUFFER_SIZE / 2);
+
+    /**
+     * Constructs a FileConverter object.
+     *
+     * @param session  the session that converts the characters.
+     * @param inputCharset  the character set of the source files.
+     * @param outputCharset  the character set of the destination files.
+     */
+    FileConverter(KakasiSession session,
+                  Charset inputCharset, Charset outputCharset) {
+        this.session = session;
+        decoder = inputCharset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        encoder = outputCharset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Converts the source file, and writes the result to the destination
+     * file.
+     *
+     * @param source  the source file.
+     * @param destination  the destination file.
+     * @return  the number of bytes read from the source file.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    long convert(File source, File destination) throws IOException {
+        FileOutputStream out = new FileOutputStream(destination);
+        try {
+            return convert(source, out.getChannel());
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Converts the source file, and writes the result to the channel.
+     * The channel is not closed.
+     *
+     * @param source  the source file.
+     * @param destination  the destination channel.
+     * @return  the number of bytes read from the source file.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    long convert(File source, WritableByteChannel destination)
+        throws IOException {
+        FileInputStream in = new FileInputStream(source);
+        try {
+            ChannelReader reader = new ChannelReader(in.getChannel());
+            ChannelWriter writer = new ChannelWriter(destination);
+            session.convert(reader, writer);
+            writer.close();
+            return reader.getByteCount();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reader that decodes the bytes read from the channel.
+     */
+    private class ChannelReader extends Reader {
+
+        private final FileChannel channel;
+        private long byteCount;
+        private boolean endOfInput;
+        private boolean decoded;
+        private boolean flushed;
+
+        ChannelReader(FileChannel channel) {
+            this.channel = channel;
+            decoder.reset();
+            inputBytes.clear();
+            inputBytes.flip();
+        }
+
+        long getByteCount() {
+            return byteCount;
+        }
+
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            CharBuffer chars = CharBuffer.wrap(cbuf, off, len);
+            while (true) {
+                if (!endOfInput) {
+                    decoder.decode(inputBytes, chars, false);
+                } else if (!decoded) {
+                    if (decoder.decode(inputBytes, chars, true)
+                        .isUnderflow()) {
+                        decoded = true;
+                    }
+                } else if (!flushed) {
+                    if (decoder.flush(chars).isUnderflow()) {
+                        flushed = true;
+                    }
+                }
+                int count = chars.position() - off;
+                if (count > 0) {
+                    return count;
+                }
+                if (flushed) {
+                    return -1;
+                }
+                if (!endOfInput) {
+                    inputBytes.compact();
+                    int length = channel.read(inputBytes);
+                    if (length < 0) {
+                        endOfInput = true;
+                    } else {
+                        byteCount += length;
+                    }
+                    inputBytes.flip();
+                }
+            }
+        }
+
+        public void close() {
+        }
+
+    }
+
+    /**
+     * Writer that encodes the characters and writes them to the channel.
+     */
+    private class ChannelWriter extends Writer {
+
+        private final WritableByteChannel channel;
+
+        ChannelWriter(WritableByteChannel channel) {
+            this.channel = channel;
+            encoder.reset();
+            outputChars.clear();
+            outputBytes.clear();
+        }
+
+        public void write(int c) throws IOException {
+            if (!outputChars.hasRemaining()) {
+                encode(false);
+            }
+            outputChars.put((char)c);
+        }
+
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            while (len > 0) {
+                if (!outputChars.hasRemaining()) {
+                    encode(false);
+                }
+                int length = Math.min(len, outputChars.remaining());
+                outputChars.put(cbuf, off, length);
+                off += length;
+                len -= length;
+            }
+        }
+
+        public void write(String str, int off, int len) throws IOException {
+            while (len > 0) {
+                if (!outputChars.hasRemaining()) {
+                    encode(false);
+                }
+                int length = Math.min(len, outputChars.remaining());
+                outputChars.put(str, off, off + length);
+                off += length;
+                len -= length;
+            }
+        }
+
+        public void flush() throws IOException {
+            encode(false);
+            drain();
+        }
+
+        public void close() throws IOException {
+            encode(true);
+            drain();
+        }
+
+        /**
+         * Encodes the characters in the buffer. A high surrogate at the
+         * end is kept until the next character.
+         *
+         * @param endOfInput  if true, no more characters are written.
+         * @exception  IOException  if an I/O error occurred.
+         */
+        private void encode(boolean endOfInput) throws IOException {
+            outputChars.flip();
+            while (encoder.encode(outputChars, outputBytes, endOfInput)
+                   .isOverflow()) {
+                drain();
+            }
+            if (endOfInput) {
+                while (encoder.flush(outputBytes).isOverflow()) {
+                    drain();
+                }
+            }
+            outputChars.compact();
+        }
+
+        /**
+         * Writes the encoded bytes to the channel.
+         *
+         * @exception  IOException  if an I/O error occurred.
+         */
+        private void drain() throws IOException {
+            outputBytes.flip();
+            while (outputBytes.hasRemaining()) {
+                channel.write(outputBytes);
+            }
+            outputBytes.clear();
+        }
+
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class converts one large text by splitting it into chunks, and
+ * converting the chunks on a fork-join pool.
+ * <p>
+ * A chunk ends just after a whitespace character where the conversion
+ * never reads over, so the result is the same as converting the whole
+ * text at once. A whitespace character is used because the dictionary
+ * match may continue over punctuation and changes of the script, like
+ * the okurigana after kanji. Each chunk is converted with a session
+ * borrowed from the engine, and the results are appended in the order
+ * of the chunks.
+ *
+ * @see KakasiEngine#convertParallel(CharSequence, Appendable)
+ * @see Kakasi#isBreakable(int, char)
+ */
+class ForkJoinConverter {
+
+    /** The default minimum size of a chunk */
+    static final int DEFAULT_MIN_CHUNK_SIZE = 16 << 10;
+
+    /** The number of chunks for each thread of the pool */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final KakasiEngine engine;
+    private final ForkJoinPool pool;
+    private final int minChunkSize;
+
+    /**
+     * Constructs a ForkJoinConverter object.
+     *
+     * @param engine  the engine that converts the chunks.
+     * @param pool  the pool that the chunks are converted on.
+     * @param minChunkSize  the minimum number of characters of a chunk.
+     */
+    ForkJoinConverter(KakasiEngine engine, ForkJoinPool pool,
+                      int minChunkSize) {
+        if (minChunkSize <= 0) {
+            throw new IllegalArgumentException(
+                "Illegal chunk size: " + minChunkSize);
+        }
+        this.engine = engine;
+        this.pool = pool;
+        this.minChunkSize = minChunkSize;
+    }
+
+    /**
+     * Converts the specified CharSequence object, and appends the result
+     * to the Appendable object.
+     *
+     * @param in  the CharSequence object to convert.
+     * @param out  the Appendable object.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    void convert(CharSequence in, Appendable out) throws IOException {
+        int length = in.length();
+        char[] chars;
+        if (in instanceof String) {
+            chars = ((String)in).toCharArray();
+        } else {
+            chars = new char[length];
+            for (int index = 0; index < length; index++) {
+                chars[index] = in.charAt(index);
+            }
+        }
+        int[] splits = split(chars);
+        StringBuilder[] results = new StringBuilder[splits.length - 1];
+        try {
+            pool.invoke(new ChunkTask(chars, splits, results,
+                                      0, results.length));
+        } catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+        for (int index = 0; index < results.length; index++) {
+            out.append(results[index]);
+        }
+    }
+
+    /**
+     * Splits the characters into chunks. Each chunk, the last one too,
+     * has at least the chunk size of characters, so a text shorter than
+     * twice the minimum chunk size is one chunk.
+     *
+     * @param chars  the characters to convert.
+     * @return  the start of each chunk, followed by the length of the
+     *           characters.
+     */
+    private int[] split(char[] chars) {
+        int length = chars.length;
+        int chunkSize = Math.max(
+            minChunkSize,
+            length / (pool.getParallelism() * CHUNKS_PER_THREAD));
+        int[] splits = new int[length / chunkSize + 2];
+        int count = 1;
+        int position = 0;
+        while (length - position - chunkSize >= chunkSize) {
+            int next = findSplit(chars, position + chunkSize);
+            if (length - next < chunkSize) {
+                break;
+            }
+            position = next;
+            splits[count++] = position;
+        }
+        splits[count++] = length;
+        int[] result = new int[count];
+        System.arraycopy(splits, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Finds the end of a chunk. The chunk ends just after the first
+     * breakable whitespace character from the specified position.
+     *
+     * @param chars  the characters to convert.
+     * @param start  the position that the search starts from.
+     * @return  the end of the chunk.
+     */
+    private int findSplit(char[] chars, int start) {
+        int previous = -1;
+        for (int index = start; index < chars.length; index++) {
+            char ch = chars[index];
+            if (!Character.isWhitespace(ch)) {
+                previous = ch;
+            } else if (engine.isBreakable(previous, ch)) {
+                return index + 1;
+            }
+        }
+        return chars.length;
+    }
+
+    /**
+     * Task that converts a range of the chunks. The range is split in
+     * half until it is one chunk.
+     */
+    private class ChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final char[] chars;
+        private final int[] splits;
+        private final StringBuilder[] results;
+        private final int from;
+        private final int to;
+
+        ChunkTask(char[] chars, int[] splits, StringBuilder[] results,
+                  int from, int to) {
+            this.chars = chars;
+            this.splits = splits;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(
+                    new ChunkTask(chars, splits, results, from, middle),
+                    new ChunkTask(chars, splits, results, middle, to));
+                return;
+            }
+            int start = splits[from];
+            int length = splits[from + 1] - start;
+            StringBuilder builder = new StringBuilder(length * 2);
+            SessionPool sessions = engine.getSessionPool();
+            KakasiSession session = sessions.borrowSession();
+            try {
+                session.convert(chars, start, length, builder);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+            sessions.returnSession(session);
+            results[from] = builder;
+        }
+
+    }
+
+}
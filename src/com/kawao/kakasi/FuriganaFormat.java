@@ -0,0 +1,74 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+/**
+ * An object of this class holds the markup written around a word
+ * in the furigana mode. The markup is written as it is even if the
+ * HTML escape mode is true.
+ *
+ * @see Kakasi#setFuriganaFormat(FuriganaFormat)
+ * @see KanjiOutput#setHtmlEscapeMode(boolean)
+ */
+public class FuriganaFormat {
+
+    /** The format that writes the reading in brackets like "kanji[yomi]" */
+    public static final FuriganaFormat PLAIN =
+        new FuriganaFormat("", "[", "]");
+
+    /** The format that writes the HTML ruby element */
+    public static final FuriganaFormat RUBY =
+        new FuriganaFormat("<ruby>", "<rt>", "</rt></ruby>");
+
+    private final String open;
+    private final String separator;
+    private final String close;
+
+    /**
+     * Constructs a FuriganaFormat object.
+     *
+     * @param open  the markup written before the word.
+     * @param separator  the markup written between the word and the reading.
+     * @param close  the markup written after the reading.
+     */
+    public FuriganaFormat(String open, String separator, String close) {
+        this.open = open;
+        this.separator = separator;
+        this.close = close;
+    }
+
+    /**
+     * Gets the markup written before the word.
+     */
+    public String getOpen() {
+        return open;
+    }
+
+    /**
+     * Gets the markup written between the word and the reading.
+     */
+    public String getSeparator() {
+        return separator;
+    }
+
+    /**
+     * Gets the markup written after the reading.
+     */
+    public String getClose() {
+        return close;
+    }
+
+}
@@ -20,7 +20,6 @@ package com.kawao.kakasi;
 import java.io.InputStream;
 import java.io.FileInputStream;
 import java.io.BufferedReader;
-import java.io.InputStreamReader;
 import java.io.IOException;
 import java.util.Map;
 import java.util.HashMap;
@@ -74,7 +73,8 @@ class ItaijiDictionary {
         }
         try {
             BufferedReader reader =
-                new BufferedReader(new InputStreamReader(in, encoding));
+                new BufferedReader(
+                    AutoDetectReader.createReader(in, encoding));
             try {
                 while (true) {
                     String line = reader.readLine();
@@ -18,14 +18,26 @@
 package com.kawao.kakasi;
 
 import java.io.Reader;
-import java.io.InputStreamReader;
 import java.io.BufferedReader;
 import java.io.StringReader;
 import java.io.Writer;
 import java.io.OutputStreamWriter;
 import java.io.BufferedWriter;
-import java.io.StringWriter;
 import java.io.IOException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
 
 /**
  * This class is the KAKASI/JAVA main class.
@@ -53,23 +65,42 @@ public class Kakasi {
     /** Romaji type of Kunrei */
     public static final int KUNREI = KanaToRomaConverterImpl.KUNREI;
 
-    private static final Converter defaultConverter = new DefaultConverter();
+    /** The minimum number of elements converted by a thread in a batch */
+    private static final int BATCH_RANGE_SIZE = 256;
 
     private final KanjiInput input = new KanjiInput();
     private final KanjiOutput output = new KanjiOutput();
+    private final KanjiInput localInput = new LocalKanjiInput();
+    private final KanjiOutput localOutput = new LocalKanjiOutput();
+    private final AppendableWriter appendableWriter = new AppendableWriter();
+    private final Converter defaultConverter = new DefaultConverter();
+    private final Converter asciiDefaultConverter = new DefaultConverter(true);
 
     private final KanwaDictionary kanwaDictionary;
     private final KanjiConverterImpl kanjiConverterImpl;
     private final HiraganaConverterImpl hiraganaConverterImpl;
     private final KatakanaConverterImpl katakanaConverterImpl;
     private final KanaToRomaConverterImpl kanaToRomaConverterImpl;
+    private final RomaToKanaConverterImpl romaToKanaConverterImpl;
+    private final KanjiTokenizer tokenizer;
 
     private Converter kanjiConverter;
     private Converter hiraganaConverter;
     private Converter katakanaConverter;
+    private Converter asciiConverter;
+
+    private String kanjiCharacterSet;
+    private String hiraganaCharacterSet;
+    private String katakanaCharacterSet;
+    private String asciiCharacterSet;
 
     private boolean wakachigakiMode;
 
+    private KakasiEngine engine;
+
+    private KakasiExecutor asyncExecutor;
+    private boolean ownAsyncExecutor;
+
     /**
      * Constructs a Kakasi object.
      */
@@ -83,12 +114,107 @@ public class Kakasi {
      * @param kanwaDictionary  the KanwaDictionary object.
      */
     public Kakasi(KanwaDictionary kanwaDictionary) {
+        input.setIdleOutput(output);
         this.kanwaDictionary =
             kanwaDictionary == null ? new KanwaDictionary() : kanwaDictionary;
         kanjiConverterImpl = new KanjiConverterImpl(this.kanwaDictionary);
         hiraganaConverterImpl = new HiraganaConverterImpl();
         katakanaConverterImpl = new KatakanaConverterImpl();
         kanaToRomaConverterImpl = new KanaToRomaConverterImpl();
+        romaToKanaConverterImpl =
+            new RomaToKanaConverterImpl(kanaToRomaConverterImpl);
+        tokenizer = new KanjiTokenizer(this.kanwaDictionary,
+                                       hiraganaConverterImpl,
+                                       katakanaConverterImpl,
+                                       kanaToRomaConverterImpl);
+    }
+
+    /**
+     * Creates a Kakasi object that shares the kanwa dictionary with this
+     * object, in the same modes as this object. The new object is used
+     * as the configuration of a KakasiEngine object, and by each of its
+     * sessions.
+     *
+     * @return  the new Kakasi object.
+     */
+    synchronized Kakasi copy() {
+        Kakasi kakasi = new Kakasi(kanwaDictionary);
+        kakasi.setupKanjiConverter(kanjiCharacterSet);
+        kakasi.setupHiraganaConverter(hiraganaCharacterSet);
+        kakasi.setupKatakanaConverter(katakanaCharacterSet);
+        kakasi.setupAsciiConverter(asciiCharacterSet);
+        kakasi.wakachigakiMode = wakachigakiMode;
+        kakasi.setHeikiMode(isHeikiMode());
+        kakasi.setFuriganaMode(isFuriganaMode());
+        kakasi.setFuriganaFormat(getFuriganaFormat());
+        kakasi.setLatticeMode(isLatticeMode());
+        kakasi.setRomajiSystem(getRomajiSystem());
+        kakasi.setRomajiCapitalizeMode(isRomajiCapitalizeMode());
+        kakasi.setRomajiUpperCaseMode(isRomajiUpperCaseMode());
+        kakasi.setTokenReadingMode(isTokenReadingMode());
+        kakasi.setTokenRomajiMode(isTokenRomajiMode());
+        kakasi.input.setSpaceEatMode(input.isSpaceEatMode());
+        kakasi.output.setAutoFlushMode(output.isAutoFlushMode());
+        kakasi.output.setAutoFlushSize(output.getAutoFlushSize());
+        kakasi.output.setAutoFlushDelay(output.getAutoFlushDelay());
+        kakasi.output.setHtmlEscapeMode(output.isHtmlEscapeMode());
+        kakasi.output.setSplitMode(output.isSplitMode());
+        return kakasi;
+    }
+
+    /**
+     * Gets the engine in the current modes of this object. The engine is
+     * kept until a mode is changed, so the parallel conversions reuse
+     * the sessions of the engine instead of copying this object again.
+     *
+     * @return  the engine.
+     */
+    synchronized KakasiEngine getEngine() {
+        if (engine == null || !engine.hasInputOutputModesOf(this)) {
+            engine = new KakasiEngine(this);
+        }
+        return engine;
+    }
+
+    /**
+     * Discards the engine after a mode of this object is changed. The
+     * modes of the input and output objects are compared by getEngine().
+     */
+    private synchronized void discardEngine() {
+        engine = null;
+    }
+
+    /**
+     * Tests whether the input and output objects of the specified object
+     * are in the same modes as those of this object, as far as the
+     * conversion by convert(CharSequence, Appendable) uses them.
+     *
+     * @param kakasi  the Kakasi object.
+     */
+    boolean hasSameInputOutputModes(Kakasi kakasi) {
+        return input.isSpaceEatMode() == kakasi.input.isSpaceEatMode() &&
+            output.isHtmlEscapeMode() == kakasi.output.isHtmlEscapeMode() &&
+            output.isSplitMode() == kakasi.output.isSplitMode();
+    }
+
+    /**
+     * Tests whether the conversion never reads over the specified
+     * whitespace character after the specified character. The input
+     * can be split after such a whitespace character, and the parts
+     * can be converted separately.
+     *
+     * @param ch  the character before the whitespace characters, or -1
+     *            if it is not known.
+     * @param whitespace  the whitespace character.
+     */
+    boolean isBreakable(int ch, char whitespace) {
+        if (!input.isSpaceEatMode()) {
+            return true;
+        }
+        // the converters skip the whitespace in the space eat mode, so
+        // only the ASCII characters written as they are may be before it
+        return ch >= 0 && ch < 0x80 && !Character.isLetterOrDigit((char)ch) &&
+            asciiConverter == null;
     }
 
     /**
@@ -103,6 +229,8 @@ public class Kakasi {
     public void setupKanjiConverter(String characterSet) {
         kanjiConverter = characterSet == null ?
             null : createKanjiConverter(characterSet);
+        kanjiCharacterSet = characterSet;
+        discardEngine();
     }
 
     /**
@@ -113,8 +241,8 @@ public class Kakasi {
      */
     private Converter createKanjiConverter(String characterSet) {
         if (characterSet.equals(ASCII)) {
-            return new CompoundConverter(createKanjiConverter(HIRAGANA),
-                                         createHiraganaConverter(ASCII));
+            return createKanjiConverter(
+                new RomajiWriter(kanaToRomaConverterImpl));
         } else if (characterSet.equals(KANJI)) {
             return new Converter() {
                 public boolean convert(KanjiInput input, Writer output)
@@ -130,8 +258,7 @@ public class Kakasi {
                 }
             };
         } else if (characterSet.equals(KATAKANA)) {
-            return new CompoundConverter(createKanjiConverter(HIRAGANA),
-                                         createHiraganaConverter(KATAKANA));
+            return createKanjiConverter(new KatakanaWriter());
         } else {
             String message =
                 "KanjiConverter does not support character set: " +
@@ -140,6 +267,25 @@ public class Kakasi {
         }
     }
 
+    /**
+     * Creates the kanji converter that writes the Hiragana readings to
+     * the specified writer, which converts them to the destination
+     * character set.
+     *
+     * @param  kanaWriter  the writer that converts the readings.
+     */
+    private Converter createKanjiConverter(final KanaWriter kanaWriter) {
+        return new Converter() {
+            public boolean convert(KanjiInput input, Writer output)
+                throws IOException {
+                kanaWriter.start(output);
+                boolean ret = kanjiConverterImpl.toHiragana(input, kanaWriter);
+                kanaWriter.finish();
+                return ret;
+            }
+        };
+    }
+
     /**
      * Prepares the hiragana converter.
      *
@@ -151,6 +297,8 @@ public class Kakasi {
     public void setupHiraganaConverter(String characterSet) {
         hiraganaConverter = characterSet == null ?
             null : createHiraganaConverter(characterSet);
+        hiraganaCharacterSet = characterSet;
+        discardEngine();
     }
 
     /**
@@ -201,6 +349,8 @@ public class Kakasi {
     public void setupKatakanaConverter(String characterSet) {
         katakanaConverter = characterSet == null ?
             null : createKatakanaConverter(characterSet);
+        katakanaCharacterSet = characterSet;
+        discardEngine();
     }
 
     /**
@@ -240,6 +390,50 @@ public class Kakasi {
         }
     }
 
+    /**
+     * Prepares the ascii converter, which converts romaji to kana.
+     * The other ASCII characters are written as they are.
+     *
+     * @param  characterSet  the destination character set ID.
+     * @see #HIRAGANA
+     * @see #KATAKANA
+     */
+    public void setupAsciiConverter(String characterSet) {
+        asciiConverter = characterSet == null ?
+            null : createAsciiConverter(characterSet);
+        asciiCharacterSet = characterSet;
+        discardEngine();
+    }
+
+    /**
+     * Creates the ascii converter that converts romaji to the specified
+     * character set.
+     *
+     * @param  characterSet  the destination character set ID.
+     */
+    private Converter createAsciiConverter(String characterSet) {
+        if (characterSet.equals(HIRAGANA)) {
+            return new Converter() {
+                public boolean convert(KanjiInput input, Writer output)
+                    throws IOException {
+                    return romaToKanaConverterImpl.toHiragana(input, output);
+                }
+            };
+        } else if (characterSet.equals(KATAKANA)) {
+            return new Converter() {
+                public boolean convert(KanjiInput input, Writer output)
+                    throws IOException {
+                    return romaToKanaConverterImpl.toKatakana(input, output);
+                }
+            };
+        } else {
+            String message =
+                "AsciiConverter does not support character set: " +
+                characterSet;
+            throw new IllegalArgumentException(message);
+        }
+    }
+
     /**
      * Gets the Kanwa dictionary object.
      */
@@ -268,6 +462,7 @@ public class Kakasi {
      */
     public void setHeikiMode(boolean newMode) {
         kanjiConverterImpl.setHeikiMode(newMode);
+        discardEngine();
     }
 
     /**
@@ -284,6 +479,7 @@ public class Kakasi {
      */
     public void setFuriganaMode(boolean newMode) {
         kanjiConverterImpl.setFuriganaMode(newMode);
+        discardEngine();
     }
 
     /**
@@ -293,6 +489,68 @@ public class Kakasi {
         return kanjiConverterImpl.isFuriganaMode();
     }
 
+    /**
+     * Sets the lattice mode property. The default value is false.
+     *
+     * @param newMode  if true, kanji words are chosen from all dictionary
+     *                 matches in a run instead of the greedy longest match.
+     * @see LatticeSegmenter
+     */
+    public void setLatticeMode(boolean newMode) {
+        kanjiConverterImpl.setLatticeMode(newMode);
+        tokenizer.setLatticeMode(newMode);
+        discardEngine();
+    }
+
+    /**
+     * Gets the lattice mode property value.
+     */
+    public boolean isLatticeMode() {
+        return kanjiConverterImpl.isLatticeMode();
+    }
+
+    /**
+     * Sets the furigana format property. The default value is
+     * FuriganaFormat.PLAIN.
+     *
+     * @param newFormat  new furigana format.
+     * @see FuriganaFormat#PLAIN
+     * @see FuriganaFormat#RUBY
+     */
+    public void setFuriganaFormat(FuriganaFormat newFormat) {
+        if (newFormat == null) {
+            throw new NullPointerException("newFormat");
+        }
+        kanjiConverterImpl.setFuriganaFormat(newFormat);
+        discardEngine();
+    }
+
+    /**
+     * Gets the furigana format property value.
+     */
+    public FuriganaFormat getFuriganaFormat() {
+        return kanjiConverterImpl.getFuriganaFormat();
+    }
+
+    /**
+     * Sets the HTML escape mode property. The default value is false.
+     * The markup of the furigana format is not escaped.
+     *
+     * @param newMode  new HTML escape mode value.
+     * @see KanjiOutput#setHtmlEscapeMode(boolean)
+     */
+    public void setHtmlEscapeMode(boolean newMode) {
+        output.setHtmlEscapeMode(newMode);
+        discardEngine();
+    }
+
+    /**
+     * Gets the HTML escape mode property value.
+     */
+    public boolean isHtmlEscapeMode() {
+        return output.isHtmlEscapeMode();
+    }
+
     /**
      * Sets the wakachigaki mode property. The default value is false.
      * 
@@ -329,11 +587,14 @@ public class Kakasi {
      */
     public void setRomajiType(int newType) {
         kanaToRomaConverterImpl.setType(newType);
+        discardEngine();
     }
     
     /**
      * Gets the Romaji type property value.
      *
+     * @return  the romaji type, or -1 if the romanization system is neither
+     *           Hepburn nor Kunrei.
      * @see #HEPBURN
      * @see #KUNREI
      */
@@ -341,6 +602,27 @@ public class Kakasi {
         return kanaToRomaConverterImpl.getType();
     }
 
+    /**
+     * Sets the romanization system by name. The default value is
+     * "hepburn". The systems are compiled from the files in the dict/romaji
+     * directory when the jar is built; "hepburn", "kunrei", "nihon" and
+     * "passport" are included.
+     *
+     * @param name  the name of the romanization system.
+     * @exception  IllegalArgumentException  if there is no such system.
+     */
+    public void setRomajiSystem(String name) {
+        kanaToRomaConverterImpl.setSystem(name);
+        discardEngine();
+    }
+
+    /**
+     * Gets the name of the romanization system.
+     */
+    public String getRomajiSystem() {
+        return kanaToRomaConverterImpl.getSystem().getName();
+    }
+
     /**
      * Sets the romaji capitalize mode property. The default value is false.
      *
@@ -348,6 +630,7 @@ public class Kakasi {
      */
     public void setRomajiCapitalizeMode(boolean newMode) {
         kanaToRomaConverterImpl.setCapitalizeMode(newMode);
+        discardEngine();
     }
 
     /**
@@ -364,6 +647,7 @@ public class Kakasi {
      */
     public void setRomajiUpperCaseMode(boolean newMode) {
         kanaToRomaConverterImpl.setUpperCaseMode(newMode);
+        discardEngine();
     }
 
     /**
@@ -373,19 +657,396 @@ public class Kakasi {
         return kanaToRomaConverterImpl.isUpperCaseMode();
     }
 
+    /**
+     * Sets the token reading mode property. The default value is false.
+     *
+     * @param newMode  if true, tokens hold the reading in hiragana.
+     * @see #nextToken()
+     */
+    public void setTokenReadingMode(boolean newMode) {
+        tokenizer.setReadingMode(newMode);
+    }
+
+    /**
+     * Gets the token reading mode property value.
+     */
+    public boolean isTokenReadingMode() {
+        return tokenizer.isReadingMode();
+    }
+
+    /**
+     * Sets the token romaji mode property. The default value is false.
+     *
+     * @param newMode  if true, tokens hold the reading in romaji.
+     * @see #nextToken()
+     */
+    public void setTokenRomajiMode(boolean newMode) {
+        tokenizer.setRomajiMode(newMode);
+    }
+
+    /**
+     * Gets the token romaji mode property value.
+     */
+    public boolean isTokenRomajiMode() {
+        return tokenizer.isRomajiMode();
+    }
+
+    /**
+     * Reads the next word from the input object. The words are split in
+     * the same way as the wakachigaki mode does, and whitespace characters
+     * are skipped. In the space eat mode, the whitespace characters within
+     * a word are part of the word, so the offsets of the token always
+     * point to the source characters. The returned object is reused by
+     * the next call.
+     *
+     * @return  the token object, or null if the end of the stream has been
+     *           reached.
+     * @exception  IOException  if an I/O error occurred.
+     * @see #getInput()
+     */
+    public synchronized KanjiToken nextToken() throws IOException {
+        return tokenizer.next(input);
+    }
+
     /**
      * Processes the specified string.
      *
      * @param string  the input string to process.
      * @return  the result string.
      * @exception  IOException  if an I/O error occurred.
+     * @see #convert(CharSequence, Appendable)
      */
     public synchronized String doString(String string) throws IOException {
-        input.setInputString(string);
-        StringWriter writer = new StringWriter(string.length() * 2);
-        output.setWriter(writer);
-        run();
-        return writer.toString();
+        StringBuilder builder = new StringBuilder(string.length() * 2);
+        convert(string, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Processes the specified string on the common fork-join pool. The
+     * string is split into chunks that are converted in parallel, and
+     * the result is the same as doString(String). This is for a large
+     * text; a short string is converted as one chunk.
+     *
+     * @param string  the input string to process.
+     * @return  the result string.
+     * @exception  IOException  if an I/O error occurred.
+     * @see KakasiEngine#convertParallel(CharSequence, Appendable,
+     *                                   java.util.concurrent.ForkJoinPool,
+     *                                   int)
+     */
+    public String doStringParallel(String string) throws IOException {
+        StringBuilder builder = new StringBuilder(string.length() * 2);
+        getEngine().convertParallel(string, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Converts the specified characters, and appends the result to the
+     * specified object. The characters are read directly from the
+     * sequence, and the result is appended directly to the object.
+     * <p>
+     * The characters are converted with the input and output objects that
+     * are used only while this object is locked, in the same modes as the
+     * objects returned by getInput() and getOutput().
+     *
+     * @param in  the characters to convert.
+     * @param out  the destination of the result.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    public synchronized void convert(CharSequence in, Appendable out)
+        throws IOException {
+        localInput.setInput(in);
+        convert(out);
+    }
+
+    /**
+     * Converts the specified portion of an array, and appends the result
+     * to the specified builder. The array is read without being copied,
+     * so it must not be changed during the conversion.
+     *
+     * @param chars  the characters to convert.
+     * @param offset  the offset of the first character.
+     * @param length  the number of characters.
+     * @param out  the destination of the result.
+     * @exception  IOException  if an I/O error occurred.
+     * @see #convert(CharSequence, Appendable)
+     */
+    public synchronized void convert(char[] chars, int offset, int length,
+                                     StringBuilder out) throws IOException {
+        localInput.setInput(chars, offset, length);
+        convert(out);
+    }
+
+    /**
+     * Converts the characters read from the specified reader, and writes
+     * the result to the specified writer, in the same way as
+     * convert(CharSequence, Appendable) does. The writer is flushed but
+     * not closed.
+     *
+     * @param in  the reader of the characters to convert.
+     * @param out  the destination of the result.
+     * @exception  IOException  if an I/O error occurred.
+     * @see FileConverter
+     */
+    synchronized void convert(Reader in, Writer out) throws IOException {
+        localInput.setReader(in);
+        convert(out);
+    }
+
+    /**
+     * Converts the input set to the local input object, and appends the
+     * result to the specified object.
+     *
+     * @param out  the destination of the result.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private void convert(Appendable out) throws IOException {
+        setupLocal();
+        if (out instanceof Writer) {
+            localOutput.setWriter((Writer)out);
+        } else {
+            appendableWriter.setAppendable(out);
+            localOutput.setWriter(appendableWriter);
+        }
+        try {
+            run(localInput, localOutput);
+        } finally {
+            localInput.setReader(null);
+            localOutput.setWriter(null);
+            appendableWriter.setAppendable(null);
+        }
+    }
+
+    /**
+     * Sets the modes of the local input and output objects to the modes
+     * of the objects returned by getInput() and getOutput().
+     */
+    private void setupLocal() {
+        localInput.setSpaceEatMode(input.isSpaceEatMode());
+        localOutput.setAutoFlushMode(false);
+        localOutput.setHtmlEscapeMode(output.isHtmlEscapeMode());
+        localOutput.setSplitMode(output.isSplitMode());
+    }
+
+    /**
+     * Converts each element of the specified list, in the same way as
+     * convert(CharSequence, Appendable) does. The local input and output
+     * objects are set up once for all elements, and the results are
+     * appended to one text.
+     *
+     * @param inputs  the list of CharSequence objects to convert.
+     * @return  the results.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    public synchronized KanjiBatch convertAll(
+        List<? extends CharSequence> inputs) throws IOException {
+        StringBuilder text = new StringBuilder(inputs.size() * 16);
+        int[] offsets = new int[inputs.size() + 1];
+        convertAll(inputs, 0, inputs.size(), text, offsets);
+        offsets[inputs.size()] = text.length();
+        return new KanjiBatch(text, offsets);
+    }
+
+    /**
+     * Converts each element of the specified list on the specified number
+     * of threads. The list is split into ranges, and each range is
+     * converted by a session borrowed from the engine of this object.
+     * The results are the same as convertAll(List).
+     *
+     * @param inputs  the list of CharSequence objects to convert.
+     * @param threadCount  the number of threads.
+     * @return  the results.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    public KanjiBatch convertAll(final List<? extends CharSequence> inputs,
+                                 int threadCount) throws IOException {
+        final int size = inputs.size();
+        threadCount = Math.min(threadCount, size / BATCH_RANGE_SIZE);
+        if (threadCount <= 1) {
+            return convertAll(inputs);
+        }
+        final SessionPool sessions = getEngine().getSessionPool();
+        final int[] offsets = new int[size + 1];
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            Future[] results = new Future[threadCount];
+            for (int index = 0; index < threadCount; index++) {
+                final int from = (int)((long)size * index / threadCount);
+                final int to = (int)((long)size * (index + 1) / threadCount);
+                results[index] = executor.submit(new Callable() {
+                        public Object call() throws IOException {
+                            StringBuilder text = new StringBuilder();
+                            KakasiSession session = sessions.borrowSession();
+                            session.convertAll(inputs, from, to,
+                                               text, offsets);
+                            sessions.returnSession(session);
+                            return text;
+                        }
+                    });
+            }
+            StringBuilder text = new StringBuilder();
+            for (int index = 0; index < threadCount; index++) {
+                int from = (int)((long)size * index / threadCount);
+                int to = (int)((long)size * (index + 1) / threadCount);
+                int base = text.length();
+                text.append((StringBuilder)getResult(results[index]));
+                for (int at = from; at < to; at++) {
+                    offsets[at] += base;
+                }
+            }
+            offsets[size] = text.length();
+            return new KanjiBatch(text, offsets);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns a stream of the converted strings of the specified stream.
+     * The elements are converted with the sessions of the engine of this
+     * object, so a parallel stream is converted without waiting for the
+     * lock of this object, and the sessions are reused by the later
+     * streams. The encounter order of the stream is kept. The modes are
+     * those at the time of this call.
+     * <p>
+     * An I/O error in the conversion is thrown as an UncheckedIOException
+     * from the terminal operation.
+     *
+     * @param strings  the stream of CharSequence objects.
+     * @return  the stream of the converted strings.
+     */
+    public Stream<String> convertStream(
+        Stream<? extends CharSequence> strings) {
+        return strings.map(new StreamConverter(getEngine()));
+    }
+
+    /**
+     * Returns a collector that converts the CharSequence elements of a
+     * stream and collects the results to a KanjiBatch object in the
+     * encounter order. As with convertStream(Stream), the elements are
+     * converted with the sessions of the engine of this object.
+     *
+     * @return  the collector.
+     */
+    public Collector<CharSequence, ?, KanjiBatch> batchCollector() {
+        return new StreamConverter(getEngine()).collector();
+    }
+
+    /**
+     * Converts the specified CharSequence object asynchronously on the
+     * executor of this object. The CharSequence object must not be
+     * changed until the conversion is completed.
+     * <p>
+     * The executor is created on the first call, with a thread for each
+     * processor, a queue of KakasiExecutor.DEFAULT_QUEUE_SIZE and the
+     * ABORT policy, unless it is set by setAsyncExecutor(). It converts
+     * with the engine of this object, so the conversion is in the
+     * current modes as doString() is: after a mode is changed, the
+     * executor is shut down and a new one is created for the new
+     * engine. An executor set by setAsyncExecutor() converts in the
+     * modes of its own engine.
+     *
+     * @param in  the CharSequence object to convert.
+     * @return  the future of the converted string.
+     * @see KakasiExecutor#convertAsync(CharSequence)
+     */
+    public CompletableFuture<String> convertAsync(CharSequence in) {
+        KakasiExecutor executor;
+        synchronized (this) {
+            KakasiEngine current = getEngine();
+            if (ownAsyncExecutor && asyncExecutor.getEngine() != current) {
+                // the queued conversions are still completed in the old
+                // modes
+                asyncExecutor.shutdown();
+                asyncExecutor = null;
+                ownAsyncExecutor = false;
+            }
+            if (asyncExecutor == null) {
+                asyncExecutor = new KakasiExecutor(
+                    current,
+                    Runtime.getRuntime().availableProcessors(),
+                    KakasiExecutor.DEFAULT_QUEUE_SIZE, KakasiExecutor.ABORT);
+                ownAsyncExecutor = true;
+            }
+            executor = asyncExecutor;
+        }
+        return executor.convertAsync(in);
+    }
+
+    /**
+     * Sets the executor used by convertAsync(). If the executor was
+     * created by this object, it is shut down after its queued
+     * conversions are completed.
+     *
+     * @param executor  the executor, or null to create a new executor on
+     *                  the next call of convertAsync().
+     */
+    public synchronized void setAsyncExecutor(KakasiExecutor executor) {
+        if (ownAsyncExecutor) {
+            asyncExecutor.shutdown();
+        }
+        asyncExecutor = executor;
+        ownAsyncExecutor = false;
+    }
+
+    /**
+     * Converts the specified range of the list, and appends the results
+     * to the text. The offsets of the results are stored to the array.
+     *
+     * @param inputs  the list of CharSequence objects to convert.
+     * @param from  the index of the first element.
+     * @param to  the index after the last element.
+     * @param text  the text that the results are appended to.
+     * @param offsets  the array that the offsets are stored to.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    synchronized void convertAll(List<? extends CharSequence> inputs,
+                                 int from, int to,
+                                 StringBuilder text, int[] offsets)
+        throws IOException {
+        setupLocal();
+        appendableWriter.setAppendable(text);
+        try {
+            for (int index = from; index < to; index++) {
+                offsets[index] = text.length();
+                localInput.setInput(inputs.get(index));
+                localOutput.setWriter(appendableWriter);
+                run(localInput, localOutput);
+            }
+        } finally {
+            localInput.setReader(null);
+            localOutput.setWriter(null);
+            appendableWriter.setAppendable(null);
+        }
+    }
+
+    /**
+     * Gets the result of the task. The exception thrown by the task is
+     * thrown again.
+     *
+     * @param result  the result of the task.
+     * @return  the result object.
+     * @exception  IOException  if the task threw it, or the thread was
+     *               interrupted. The interrupt status of the thread is
+     *               set again in that case.
+     */
+    static Object getResult(Future result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Kakasi: Interrupted");
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw (Error)cause;
+        }
     }
 
     /**
@@ -394,6 +1055,19 @@ public class Kakasi {
      * @exception  IOException  if an I/O error occurred.
      */
     public synchronized void run() throws IOException {
+        run(input, output);
+    }
+
+    /**
+     * Runs the conversion process with the specified input and output
+     * objects.
+     *
+     * @param input  the input object.
+     * @param output  the output object.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private void run(KanjiInput input, KanjiOutput output)
+        throws IOException {
         while (true) {
             int ch = input.get();
             if (ch < 0) {
@@ -407,9 +1081,12 @@ public class Kakasi {
                 converter = hiraganaConverter;
             } else if (block.equals(Character.UnicodeBlock.KATAKANA)) {
                 converter = katakanaConverter;
+            } else if (block.equals(Character.UnicodeBlock.BASIC_LATIN)) {
+                converter = asciiConverter;
             }
             if (converter == null) {
-                converter = defaultConverter;
+                converter = asciiConverter == null ?
+                    defaultConverter : asciiDefaultConverter;
             }
             output.putSeparator();
             if (!converter.convert(input, output)) {
@@ -429,6 +1106,14 @@ public class Kakasi {
      */
     public static void main(String[] args) throws Throwable {
         Kakasi kakasi = new Kakasi();
+        String inputEncoding = null;
+        String outputEncoding = null;
+        File inputFile = null;
+        File outputFile = null;
+        File outputDirectory = null;
+        List inputFiles = new ArrayList();
+        int threadCount = 1;
+        int port = -1;
         int index = 0;
         for (; index < args.length; index++) {
             if (args[index].charAt(0) != '-') {
@@ -438,61 +1123,8 @@ public class Kakasi {
             if (length < 2) {
                 usage();
             }
-            String characterSet = null;
             String encoding = null;
-            String typeString = null;
             switch (args[index].charAt(1)) {
-            case 'J':
-                if (length < 3) {
-                    usage();
-                }
-                switch (args[index].charAt(2)) {
-                case 'H':
-                    characterSet = HIRAGANA;
-                    break;
-                case 'K':
-                    characterSet = KATAKANA;
-                    break;
-                case 'a':
-                    characterSet = ASCII;
-                    break;
-                default:
-                    usage();
-                }
-                kakasi.setupKanjiConverter(characterSet);
-                break;
-            case 'H':
-                if (length < 3) {
-                    usage();
-                }
-                switch (args[index].charAt(2)) {
-                case 'K':
-                    characterSet = KATAKANA;
-                    break;
-                case 'a':
-                    characterSet = ASCII;
-                    break;
-                default:
-                    usage();
-                }
-                kakasi.setupHiraganaConverter(characterSet);
-                break;
-            case 'K':
-                if (length < 3) {
-                    usage();
-                }
-                switch (args[index].charAt(2)) {
-                case 'H':
-                    characterSet = HIRAGANA;
-                    break;
-                case 'a':
-                    characterSet = ASCII;
-                    break;
-                default:
-                    usage();
-                }
-                kakasi.setupKatakanaConverter(characterSet);
-                break;
             case 'i':
                 if (length > 2) {
                     encoding = args[index].substring(2);
@@ -503,7 +1135,17 @@ public class Kakasi {
                 }
                 kakasi.getInput().setReader(
                     new BufferedReader(
-                        new InputStreamReader(System.in, encoding)));
+                        AutoDetectReader.createReader(System.in, encoding)));
+                inputEncoding = encoding;
+                break;
+            case 'I':
+                if (length > 2) {
+                    inputFile = new File(args[index].substring(2));
+                } else if (++index < args.length) {
+                    inputFile = new File(args[index]);
+                } else {
+                    usage();
+                }
                 break;
             case 'o':
                 if (length > 2) {
@@ -516,59 +1158,366 @@ public class Kakasi {
                 kakasi.getOutput().setWriter(
                     new BufferedWriter(
                         new OutputStreamWriter(System.out, encoding)));
+                outputEncoding = encoding;
                 break;
-            case 'p':
-                kakasi.setHeikiMode(true);
-                break;
-            case 'f':
-                kakasi.setFuriganaMode(true);
-                break;
-            case 'c':
-                kakasi.getInput().setSpaceEatMode(true);
-                break;
-            case 's':
-                kakasi.getOutput().setSplitMode(true);
-                break;
-            case 'b':
-                kakasi.getOutput().setAutoFlushMode(false);
+            case 'O':
+                if (length > 2) {
+                    outputFile = new File(args[index].substring(2));
+                } else if (++index < args.length) {
+                    outputFile = new File(args[index]);
+                } else {
+                    usage();
+                }
                 break;
-            case 'r':
+            case 'M':
                 if (length > 2) {
-                    typeString = args[index].substring(2);
+                    inputFiles.addAll(
+                        MultiFileConverter.expand(args[index].substring(2)));
                 } else if (++index < args.length) {
-                    typeString = args[index];
+                    inputFiles.addAll(
+                        MultiFileConverter.expand(args[index]));
                 } else {
                     usage();
                 }
-                if ("hepburn".equalsIgnoreCase(typeString)) {
-                    kakasi.setRomajiType(HEPBURN);
-                } else if ("kunrei".equalsIgnoreCase(typeString)) {
-                    kakasi.setRomajiType(KUNREI);
+                break;
+            case 'D':
+                if (length > 2) {
+                    outputDirectory = new File(args[index].substring(2));
+                } else if (++index < args.length) {
+                    outputDirectory = new File(args[index]);
                 } else {
                     usage();
                 }
                 break;
-            case 'C':
-                kakasi.setRomajiCapitalizeMode(true);
+            case 'P':
+                if (length > 2) {
+                    try {
+                        threadCount =
+                            Integer.parseInt(args[index].substring(2));
+                    } catch (NumberFormatException exception) {
+                        usage();
+                    }
+                    if (threadCount < 1) {
+                        usage();
+                    }
+                } else {
+                    threadCount = Runtime.getRuntime().availableProcessors();
+                }
                 break;
-            case 'U':
-                kakasi.setRomajiUpperCaseMode(true);
+            case 'S':
+                try {
+                    if (length > 2) {
+                        port = Integer.parseInt(args[index].substring(2));
+                    } else if (++index < args.length) {
+                        port = Integer.parseInt(args[index]);
+                    } else {
+                        usage();
+                    }
+                } catch (NumberFormatException exception) {
+                    usage();
+                }
+                if (port < 0 || port > 0xffff) {
+                    usage();
+                }
                 break;
-            case 'w':
-                kakasi.setWakachigakiMode(true);
+            case 'b':
+                kakasi.getOutput().setAutoFlushMode(false);
+                break;
+            case 'F':
+                setupFlushPolicy(kakasi.getOutput(),
+                                 args[index].substring(2));
                 break;
             default:
-                usage();
+                String option = args[index];
+                if (option.equals("-r")) {
+                    if (++index >= args.length) {
+                        usage();
+                    }
+                    option += args[index];
+                }
+                try {
+                    setupMode(kakasi, option);
+                } catch (IllegalArgumentException exception) {
+                    usage();
+                }
             }
         }
         KanwaDictionary kanwaDictionary = kakasi.getKanwaDictionary();
         for (; index < args.length; index++) {
             kanwaDictionary.load(args[index]);
         }
-        kakasi.run();
+        if (port >= 0) {
+            if (inputFile != null || outputFile != null ||
+                outputDirectory != null || !inputFiles.isEmpty()) {
+                usage();
+            }
+            // the dictionary is used until the server is stopped
+            new KakasiServer(kakasi).start(port);
+            return;
+        }
+        if (!inputFiles.isEmpty()) {
+            if (inputFile != null ||
+                (outputFile != null && outputDirectory != null)) {
+                usage();
+            }
+            convertFiles(kakasi, inputFiles, outputFile, outputDirectory,
+                         inputEncoding, outputEncoding, threadCount);
+        } else if (outputDirectory != null) {
+            usage();
+        } else if (inputFile != null || outputFile != null) {
+            if (inputFile == null || outputFile == null) {
+                usage();
+            }
+            convertFile(kakasi, inputFile, outputFile,
+                        inputEncoding, outputEncoding, threadCount);
+        } else {
+            kakasi.run();
+        }
         kanwaDictionary.close();
     }
 
+    /**
+     * Sets up the mode of the specified command line option, like "-Ja",
+     * "-fruby" or "-rkunrei". The options of the input, the output and
+     * the files are not accepted.
+     *
+     * @param kakasi  the Kakasi object.
+     * @param option  the option.
+     * @exception  IllegalArgumentException  if the option is not a valid
+     *               mode option.
+     */
+    static void setupMode(Kakasi kakasi, String option) {
+        int length = option.length();
+        if (length < 2 || option.charAt(0) != '-') {
+            throw new IllegalArgumentException("Illegal option: " + option);
+        }
+        char argument = length > 2 ? option.charAt(2) : 0;
+        switch (option.charAt(1)) {
+        case 'J':
+            kakasi.setupKanjiConverter(
+                toCharacterSet(option, argument, "HKa"));
+            break;
+        case 'H':
+            kakasi.setupHiraganaConverter(
+                toCharacterSet(option, argument, "Ka"));
+            break;
+        case 'K':
+            kakasi.setupKatakanaConverter(
+                toCharacterSet(option, argument, "Ha"));
+            break;
+        case 'a':
+            kakasi.setupAsciiConverter(
+                toCharacterSet(option, argument, "HK"));
+            break;
+        case 'p':
+            kakasi.setHeikiMode(true);
+            break;
+        case 'f':
+            if (length > 2) {
+                String formatString = option.substring(2);
+                if ("plain".equalsIgnoreCase(formatString)) {
+                    kakasi.setFuriganaFormat(FuriganaFormat.PLAIN);
+                } else if ("ruby".equalsIgnoreCase(formatString)) {
+                    kakasi.setFuriganaFormat(FuriganaFormat.RUBY);
+                } else {
+                    throw new IllegalArgumentException(
+                        "Illegal option: " + option);
+                }
+            }
+            kakasi.setFuriganaMode(true);
+            break;
+        case 'e':
+            kakasi.setHtmlEscapeMode(true);
+            break;
+        case 'l':
+            kakasi.setLatticeMode(true);
+            break;
+        case 'c':
+            kakasi.getInput().setSpaceEatMode(true);
+            break;
+        case 's':
+            kakasi.getOutput().setSplitMode(true);
+            break;
+        case 'r':
+            kakasi.setRomajiSystem(option.substring(2));
+            break;
+        case 'C':
+            kakasi.setRomajiCapitalizeMode(true);
+            break;
+        case 'U':
+            kakasi.setRomajiUpperCaseMode(true);
+            break;
+        case 'w':
+            kakasi.setWakachigakiMode(true);
+            break;
+        default:
+            throw new IllegalArgumentException("Illegal option: " + option);
+        }
+    }
+
+    /**
+     * Gets the character set ID of the argument of a conversion option.
+     *
+     * @param option  the option.
+     * @param argument  the argument character, 'H', 'K' or 'a'.
+     * @param arguments  the argument characters accepted by the option.
+     * @return  the character set ID.
+     * @exception  IllegalArgumentException  if the argument is not
+     *               accepted.
+     */
+    private static String toCharacterSet(String option, char argument,
+                                         String arguments) {
+        if (argument == 0 || arguments.indexOf(argument) < 0) {
+            throw new IllegalArgumentException("Illegal option: " + option);
+        }
+        switch (argument) {
+        case 'H':
+            return HIRAGANA;
+        case 'K':
+            return KATAKANA;
+        default:
+            return ASCII;
+        }
+    }
+
+    /**
+     * Converts the file through the file channels, and prints the
+     * throughput.
+     *
+     * @param kakasi  the Kakasi object.
+     * @param inputFile  the source file.
+     * @param outputFile  the destination file.
+     * @param inputEncoding  the encoding of the source file, or null for
+     *                       the default encoding.
+     * @param outputEncoding  the encoding of the destination file, or null
+     *                        for the default encoding.
+     * @param threadCount  the number of threads. If it is more than one,
+     *                     the chunks of the file are converted in parallel.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private static void convertFile(Kakasi kakasi,
+                                    File inputFile, File outputFile,
+                                    String inputEncoding,
+                                    String outputEncoding,
+                                    int threadCount)
+        throws IOException {
+        if (inputEncoding != null &&
+            AutoDetectReader.isAutoDetect(inputEncoding)) {
+            inputEncoding = AutoDetectReader.detect(inputFile);
+        }
+        Charset inputCharset = inputEncoding == null ?
+            Charset.defaultCharset() : Charset.forName(inputEncoding);
+        Charset outputCharset = outputEncoding == null ?
+            Charset.defaultCharset() : Charset.forName(outputEncoding);
+        long startTime = System.currentTimeMillis();
+        long byteCount;
+        if (threadCount > 1) {
+            ChunkedFileConverter converter = new ChunkedFileConverter(
+                new KakasiEngine(kakasi), inputCharset, outputCharset,
+                threadCount);
+            byteCount = converter.convert(inputFile, outputFile);
+        } else {
+            FileConverter converter =
+                new FileConverter(new KakasiEngine(kakasi).openSession(),
+                                  inputCharset, outputCharset);
+            byteCount = converter.convert(inputFile, outputFile);
+        }
+        printThroughput(inputFile.toString(), byteCount, startTime);
+    }
+
+    /**
+     * Converts the files on the threads, and prints the throughput.
+     * The results are written to the files in the output directory, or
+     * concatenated in the order of the files to the output file or the
+     * standard output.
+     *
+     * @param kakasi  the Kakasi object.
+     * @param inputFiles  the list of the source files.
+     * @param outputFile  the file that the results are concatenated to,
+     *                    or null.
+     * @param outputDirectory  the directory of the results, or null.
+     * @param inputEncoding  the encoding of the source files, or null for
+     *                       the default encoding.
+     * @param outputEncoding  the encoding of the results, or null for the
+     *                        default encoding.
+     * @param threadCount  the number of threads.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private static void convertFiles(Kakasi kakasi, List inputFiles,
+                                     File outputFile, File outputDirectory,
+                                     String inputEncoding,
+                                     String outputEncoding,
+                                     int threadCount)
+        throws IOException {
+        Charset outputCharset = outputEncoding == null ?
+            Charset.defaultCharset() : Charset.forName(outputEncoding);
+        MultiFileConverter converter =
+            new MultiFileConverter(new KakasiEngine(kakasi), inputEncoding,
+                                   outputCharset, threadCount);
+        long startTime = System.currentTimeMillis();
+        long byteCount;
+        if (outputDirectory != null) {
+            byteCount = converter.convert(inputFiles, outputDirectory);
+        } else if (outputFile != null) {
+            OutputStream out = new FileOutputStream(outputFile);
+            try {
+                byteCount = converter.convert(inputFiles, out);
+            } finally {
+                out.close();
+            }
+        } else {
+            byteCount = converter.convert(inputFiles, System.out);
+        }
+        printThroughput(inputFiles.size() + " files", byteCount, startTime);
+    }
+
+    /**
+     * Prints the throughput to the standard error.
+     *
+     * @param name  the name of the input.
+     * @param byteCount  the number of bytes read.
+     * @param startTime  the time that the conversion started at.
+     */
+    private static void printThroughput(String name, long byteCount,
+                                        long startTime) {
+        long time = Math.max(System.currentTimeMillis() - startTime, 1);
+        System.err.println(name + ": " + byteCount + " bytes in " +
+                           (time / 1000.0) + " s (" +
+                           (Math.round(byteCount / 100.0 / time) / 10.0) +
+                           " MB/s)");
+    }
+
+    /**
+     * Sets the auto flush size and delay from the argument of the -F
+     * option, "[size[,milliseconds]]".
+     *
+     * @param output  the output object.
+     * @param argument  the option argument.
+     */
+    private static void setupFlushPolicy(KanjiOutput output,
+                                         String argument) {
+        int size = 8192;
+        long delay = 100;
+        try {
+            int comma = argument.indexOf(',');
+            if (comma >= 0) {
+                delay = Long.parseLong(argument.substring(comma + 1));
+                argument = argument.substring(0, comma);
+            }
+            if (argument.length() > 0) {
+                size = Integer.parseInt(argument);
+            }
+        } catch (NumberFormatException exception) {
+            usage();
+        }
+        if (size < 0 || delay < 0) {
+            usage();
+        }
+        output.setAutoFlushMode(true);
+        output.setAutoFlushSize(size);
+        output.setAutoFlushDelay(delay);
+    }
+
     /**
      * Prints usage and exit.
      */
@@ -581,9 +1530,18 @@ public class Kakasi {
         System.err.println();
         System.err.println(
             "Usage: kakasi_j [-JH | -JK | -Ja] [-HK | -Ha] [-KH | -Ka]");
+        System.err.println("\t\t[-aH | -aK]");
         System.err.println("\t\t[-i<input-encoding>] [-o<output-encoding>]");
-        System.err.println("\t\t[-p] [-f] [-c] [-s] [-b]");
-        System.err.println("\t\t[-r{hepburn|kunrei}] [-C | -U] [-w]");
+        System.err.println(
+            "\t\t[-I<input-file> -O<output-file> [-P[<threads>]]]");
+        System.err.println("\t\t[-M<input-files> [-O<output-file> | "
+                           + "-D<output-directory>] [-P[<threads>]]]");
+        System.err.println("\t\t[-S<port>]");
+        System.err.println(
+            "\t\t[-p] [-f[{plain|ruby}]] [-e] [-l] [-c] [-s]");
+        System.err.println("\t\t[-b | -F[<size>][,<milliseconds>]]");
+        System.err.println(
+            "\t\t[-r{hepburn|kunrei|nihon|passport}] [-C | -U] [-w]");
         System.err.println("\t\t[dictionary1 [dictionary2 [,,,]]]");
         System.err.println();
         System.err.println("\tCharacter Set Conversions:");
@@ -594,17 +1552,44 @@ public class Kakasi {
         System.err.println("\t -Ha: hiragana to romaji");
         System.err.println("\t -KH: katakana to hiragana");
         System.err.println("\t -Ka: katakana to romaji");
+        System.err.println("\t -aH: romaji to hiragana");
+        System.err.println("\t -aK: romaji to katakana");
         System.err.println();
         System.err.println("\tOptions:");
-        System.err.println("\t -i: input encoding");
+        System.err.println(
+            "\t -i: input encoding (auto: detect the Japanese encoding)");
         System.err.println("\t -o: output encoding");
+        System.err.println(
+            "\t -I, -O: convert the input file to the output file");
+        System.err.println(
+            "\t -P: convert chunks of the input file in parallel (with -I)");
+        System.err.println(
+            "\t -M: input file, directory or glob pattern (repeatable)");
+        System.err.println(
+            "\t -D: write a result file for each input file (with -M)");
+        System.err.println(
+            "\t     without -D the results are concatenated in order");
+        System.err.println(
+            "\t -S: run the HTTP server; POST text to /convert, /romaji,");
+        System.err.println(
+            "\t     /hiragana or /katakana (/batch/...: a result per line)");
         System.err.println("\t -p: list all readings (with -J option)");
         System.err.println("\t -f: furigana mode (with -J option)");
+        System.err.println("\t -e: escape HTML special characters");
+        System.err.println(
+            "\t -l: choose kanji words from all matches (with -J option)");
         System.err.println("\t -c: skip whitespace chars within jukugo");
         System.err.println("\t -s: insert separate characters");
         System.err.println(
             "\t -b: output buffer is not flushed when a newline character is written");
-        System.err.println("\t -r: romaji conversion system");
+        System.err.println(
+            "\t -F: output buffer is flushed at a newline after size chars or");
+        System.err.println(
+            "\t     milliseconds (default 8192,100), at any write after the");
+        System.err.println(
+            "\t     milliseconds, or when input is idle");
+        System.err.println(
+            "\t -r: romaji conversion system (compiled from dict/romaji)");
         System.err.println("\t -C: romaji Capitalize");
         System.err.println("\t -U: romaji Uppercase");
         System.err.println("\t -w: wakachigaki mode");
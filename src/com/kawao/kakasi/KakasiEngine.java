@@ -0,0 +1,186 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * An immutable, thread-safe conversion engine. The engine is built from
+ * a Kakasi object, which is used as the configuration: the modes of the
+ * Kakasi object at the time of the construction are used, and later
+ * changes of the Kakasi object do not affect the engine.
+ * <p>
+ * The conversion itself is done by KakasiSession objects. A session
+ * owns a copy of the Kakasi object made by Kakasi.copy(): the copy
+ * shares the kanwa dictionary with the engine, but has its own
+ * converters, input and output buffers, since the converters keep
+ * state between calls. Opening a session therefore costs more than
+ * a conversion of a short string; a session is obtained for each
+ * thread by getSession(), or is opened by openSession() and reused by
+ * the caller. The parallel conversions of this class and of Kakasi
+ * borrow the sessions from a pool of the engine instead, so they leave
+ * no sessions in the threads of a shared pool, and Kakasi keeps its
+ * engine until a mode is changed, so the sessions are reused by every
+ * call.
+ * <pre>
+ *   Kakasi kakasi = new Kakasi();
+ *   kakasi.setupKanjiConverter(Kakasi.HIRAGANA);
+ *   KakasiEngine engine = new KakasiEngine(kakasi);
+ *   // on any thread
+ *   String result = engine.getSession().doString(string);
+ * </pre>
+ *
+ * @see KakasiSession
+ */
+public final class KakasiEngine {
+
+    private final Kakasi prototype;
+    private final SessionPool pool;
+
+    private final ThreadLocal sessions = new ThreadLocal() {
+            protected Object initialValue() {
+                return openSession();
+            }
+        };
+
+    /**
+     * Constructs a KakasiEngine object in the modes of the specified
+     * Kakasi object.
+     *
+     * @param kakasi  the Kakasi object used as the configuration.
+     */
+    public KakasiEngine(Kakasi kakasi) {
+        prototype = kakasi.copy();
+        pool = new SessionPool(this,
+                               Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new session with a new copy of the configuration. The
+     * session must be used by one thread at a time.
+     *
+     * @return  the new session.
+     */
+    public KakasiSession openSession() {
+        return new KakasiSession(prototype.copy());
+    }
+
+    /**
+     * Gets the session of the current thread. The session is created on
+     * the first call in each thread.
+     *
+     * @return  the session of the current thread.
+     */
+    public KakasiSession getSession() {
+        return (KakasiSession)sessions.get();
+    }
+
+    /**
+     * Converts the specified string with the session of the current
+     * thread.
+     *
+     * @param string  the string to convert.
+     * @return  the converted string.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    public String doString(String string) throws IOException {
+        return getSession().doString(string);
+    }
+
+    /**
+     * Converts the specified CharSequence object with the session of the
+     * current thread, and appends the result to the Appendable object.
+     *
+     * @param in  the CharSequence object to convert.
+     * @param out  the Appendable object.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    public void convert(CharSequence in, Appendable out) throws IOException {
+        getSession().convert(in, out);
+    }
+
+    /**
+     * Converts the specified CharSequence object on the common fork-join
+     * pool, and appends the result to the Appendable object. The result
+     * is the same as convert(CharSequence, Appendable).
+     *
+     * @param in  the CharSequence object to convert.
+     * @param out  the Appendable object.
+     * @exception  IOException  if an I/O error occurred.
+     * @see #convertParallel(CharSequence, Appendable, ForkJoinPool, int)
+     */
+    public void convertParallel(CharSequence in, Appendable out)
+        throws IOException {
+        convertParallel(in, out, ForkJoinPool.commonPool(),
+                        ForkJoinConverter.DEFAULT_MIN_CHUNK_SIZE);
+    }
+
+    /**
+     * Converts the specified CharSequence object on the specified
+     * fork-join pool, and appends the result to the Appendable object.
+     * The text is split into chunks just after the whitespace characters
+     * where the conversion never reads over, so the result is the same
+     * as convert(CharSequence, Appendable). A text shorter than twice
+     * the minimum chunk size is converted as one chunk.
+     *
+     * @param in  the CharSequence object to convert.
+     * @param out  the Appendable object.
+     * @param pool  the pool that the chunks are converted on.
+     * @param minChunkSize  the minimum number of characters of a chunk.
+     * @exception  IOException  if an I/O error occurred.
+     * @exception  IllegalArgumentException  if minChunkSize is not
+     *               positive.
+     */
+    public void convertParallel(CharSequence in, Appendable out,
+                                ForkJoinPool pool, int minChunkSize)
+        throws IOException {
+        new ForkJoinConverter(this, pool, minChunkSize).convert(in, out);
+    }
+
+    /**
+     * Gets the pool of the idle sessions, which holds at most one session
+     * for each processor.
+     */
+    SessionPool getSessionPool() {
+        return pool;
+    }
+
+    /**
+     * Tests whether the engine is in the modes of the input and output
+     * objects of the specified Kakasi object.
+     *
+     * @param kakasi  the Kakasi object.
+     * @see Kakasi#hasSameInputOutputModes(Kakasi)
+     */
+    boolean hasInputOutputModesOf(Kakasi kakasi) {
+        return prototype.hasSameInputOutputModes(kakasi);
+    }
+
+    /**
+     * Tests whether the conversion never reads over the specified
+     * whitespace character after the specified character.
+     *
+     * @param ch  the character before the whitespace characters, or -1
+     *            if it is not known.
+     * @param whitespace  the whitespace character.
+     * @see Kakasi#isBreakable(int, char)
+     */
+    boolean isBreakable(int ch, char whitespace) {
+        return prototype.isBreakable(ch, whitespace);
+    }
+
+}
@@ -0,0 +1,220 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class converts strings asynchronously. Each conversion runs on a
+ * thread of the executor with a session borrowed from a pool, so the
+ * conversions never wait for each other's locks, and the sessions are
+ * reused even if the executor creates a thread for each conversion.
+ * <p>
+ * The executor created by this class has a fixed number of threads and
+ * a bounded queue. When the queue is full, a new conversion is either
+ * rejected or run on the calling thread, as the rejection policy says.
+ * A rejected conversion returns a future completed exceptionally with
+ * a RejectedExecutionException, so the caller sees the overload at
+ * once instead of waiting behind the queue.
+ * <pre>
+ *   KakasiExecutor executor =
+ *       new KakasiExecutor(engine, 4, 1000, KakasiExecutor.ABORT);
+ *   executor.convertAsync(string).thenAccept(...);
+ * </pre>
+ *
+ * @see KakasiEngine
+ */
+public class KakasiExecutor {
+
+    /** Rejection policy that fails the conversion */
+    public static final int ABORT = 0;
+
+    /** Rejection policy that runs the conversion on the calling thread */
+    public static final int CALLER_RUNS = 1;
+
+    /** The default queue size */
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    private static final AtomicInteger poolNumber = new AtomicInteger();
+
+    private final SessionPool sessions;
+    private final Executor executor;
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * Constructs a KakasiExecutor object with its own pool of threads.
+     * The threads are daemon threads, and at most one idle session for
+     * each thread is kept.
+     *
+     * @param engine  the engine that converts the strings.
+     * @param threadCount  the number of threads.
+     * @param queueSize  the maximum number of conversions waiting for a
+     *                   thread.
+     * @param rejectionPolicy  ABORT or CALLER_RUNS.
+     * @exception  IllegalArgumentException  if a parameter is not valid.
+     */
+    public KakasiExecutor(KakasiEngine engine, int threadCount,
+                          int queueSize, int rejectionPolicy) {
+        if (threadCount <= 0 || queueSize <= 0) {
+            throw new IllegalArgumentException(
+                "Illegal thread count or queue size: " + threadCount +
+                ", " + queueSize);
+        }
+        if (rejectionPolicy != ABORT && rejectionPolicy != CALLER_RUNS) {
+            throw new IllegalArgumentException(
+                "Illegal rejection policy: " + rejectionPolicy);
+        }
+        sessions = new SessionPool(engine, threadCount);
+        final String prefix =
+            "kakasi-async-" + poolNumber.incrementAndGet() + "-";
+        pool = new ThreadPoolExecutor(
+            threadCount, threadCount, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(queueSize),
+            new ThreadFactory() {
+                private final AtomicInteger threadNumber =
+                    new AtomicInteger();
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(
+                        runnable, prefix + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            },
+            new RejectedHandler(rejectionPolicy == CALLER_RUNS));
+        executor = pool;
+    }
+
+    /**
+     * Constructs a KakasiExecutor object that runs the conversions on the
+     * specified executor. The queue and the rejection are those of the
+     * executor. At most one idle session for each processor is kept.
+     *
+     * @param engine  the engine that converts the strings.
+     * @param executor  the executor.
+     */
+    public KakasiExecutor(KakasiEngine engine, Executor executor) {
+        sessions = new SessionPool(
+            engine, Runtime.getRuntime().availableProcessors());
+        this.executor = executor;
+        pool = null;
+    }
+
+    /**
+     * Converts the specified CharSequence object asynchronously.
+     * The CharSequence object must not be changed until the conversion
+     * is completed. If the future is cancelled while the conversion is
+     * queued, the conversion is skipped.
+     *
+     * @param in  the CharSequence object to convert.
+     * @return  the future of the converted string. It is completed
+     *           exceptionally with an IOException if an I/O error
+     *           occurred, or with a RejectedExecutionException if the
+     *           conversion was rejected.
+     */
+    public CompletableFuture<String> convertAsync(final CharSequence in) {
+        final CompletableFuture<String> future =
+            new CompletableFuture<String>();
+        try {
+            executor.execute(new Runnable() {
+                    public void run() {
+                        if (future.isDone()) {
+                            return;
+                        }
+                        StringBuilder builder =
+                            new StringBuilder(in.length() * 2);
+                        KakasiSession session = sessions.borrowSession();
+                        try {
+                            session.convert(in, builder);
+                        } catch (IOException exception) {
+                            future.completeExceptionally(exception);
+                            return;
+                        } catch (RuntimeException exception) {
+                            future.completeExceptionally(exception);
+                            return;
+                        }
+                        sessions.returnSession(session);
+                        future.complete(builder.toString());
+                    }
+                });
+        } catch (RejectedExecutionException exception) {
+            future.completeExceptionally(exception);
+        }
+        return future;
+    }
+
+    /**
+     * Gets the engine that converts the strings.
+     */
+    KakasiEngine getEngine() {
+        return sessions.getEngine();
+    }
+
+    /**
+     * Gets the number of conversions waiting for a thread, or -1 if the
+     * executor was given to the constructor.
+     */
+    public int getQueuedCount() {
+        return pool == null ? -1 : pool.getQueue().size();
+    }
+
+    /**
+     * Stops accepting new conversions. The queued conversions are still
+     * completed. The executor given to the constructor is not shut down.
+     */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Handler of the conversions that the pool cannot accept. After the
+     * pool is shut down, the conversions are always rejected.
+     */
+    private static class RejectedHandler
+        implements RejectedExecutionHandler {
+
+        private final boolean callerRuns;
+
+        RejectedHandler(boolean callerRuns) {
+            this.callerRuns = callerRuns;
+        }
+
+        public void rejectedExecution(Runnable runnable,
+                                      ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException(
+                    "KakasiExecutor: Shut down");
+            }
+            if (!callerRuns) {
+                throw new RejectedExecutionException(
+                    "KakasiExecutor: Queue is full");
+            }
+            runnable.run();
+        }
+
+    }
+
+}
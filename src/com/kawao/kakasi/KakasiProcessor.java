@@ -0,0 +1,361 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A Flow.Processor that converts CharSequence items to strings. The
+ * processor has one subscriber, and requests the items from the
+ * publisher only as long as at most the buffer size of items are
+ * requested, queued or converted but not delivered, so no more items
+ * than the buffer size are held in memory.
+ * <p>
+ * The items are converted on the executor, never on the thread of the
+ * publisher. The queued items are converted together by convertAll(),
+ * up to a quarter of the buffer size at a time, with one session of the
+ * engine. If the executor rejects the conversion, the subscriber is
+ * signalled the RejectedExecutionException.
+ *
+ * @see KakasiEngine
+ */
+public class KakasiProcessor
+    implements Flow.Processor<CharSequence, String> {
+
+    /** The default buffer size */
+    public static final int DEFAULT_BUFFER_SIZE = 256;
+
+    private final KakasiEngine engine;
+    private final Executor executor;
+    private final int bufferSize;
+    private final int batchSize;
+
+    private final ConcurrentLinkedQueue<CharSequence> inputs =
+        new ConcurrentLinkedQueue<CharSequence>();
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger work = new AtomicInteger();
+
+    private boolean subscribed;
+    private volatile Flow.Subscription upstream;
+    private volatile Flow.Subscriber<? super String> downstream;
+    private volatile boolean done;
+    private volatile Throwable error;
+    private volatile Throwable requestError;
+    private volatile boolean cancelled;
+
+    // used only by the drain loop, or by drain() when it is rejected
+    private final LinkedList<String> outputs = new LinkedList<String>();
+    private KakasiSession session;
+    private int held;
+    private boolean terminated;
+
+    /**
+     * Constructs a KakasiProcessor object that converts the items on the
+     * common fork-join pool with the default buffer size.
+     *
+     * @param engine  the engine that converts the items.
+     */
+    public KakasiProcessor(KakasiEngine engine) {
+        this(engine, ForkJoinPool.commonPool(), DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a KakasiProcessor object.
+     *
+     * @param engine  the engine that converts the items.
+     * @param executor  the executor that converts and delivers the items.
+     * @param bufferSize  the maximum number of items held in memory.
+     * @exception  IllegalArgumentException  if bufferSize is not positive.
+     */
+    public KakasiProcessor(KakasiEngine engine, Executor executor,
+                           int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException(
+                "Illegal buffer size: " + bufferSize);
+        }
+        this.engine = engine;
+        this.executor = executor;
+        this.bufferSize = bufferSize;
+        batchSize = Math.max(1, bufferSize / 4);
+    }
+
+    /**
+     * Adds the subscriber of the converted strings. Only one subscriber
+     * is accepted; others are signalled an IllegalStateException.
+     *
+     * @param subscriber  the subscriber.
+     */
+    public void subscribe(Flow.Subscriber<? super String> subscriber) {
+        boolean first;
+        synchronized (this) {
+            first = !subscribed;
+            subscribed = true;
+        }
+        if (first) {
+            subscriber.onSubscribe(new Subscription());
+            // nothing is signalled before onSubscribe returns
+            downstream = subscriber;
+            drain();
+            return;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+                public void request(long n) {
+                }
+                public void cancel() {
+                }
+            });
+        subscriber.onError(new IllegalStateException(
+                               "KakasiProcessor: Already subscribed"));
+    }
+
+    /**
+     * Receives the subscription of the publisher. A second subscription
+     * is cancelled.
+     *
+     * @param subscription  the subscription.
+     */
+    public void onSubscribe(Flow.Subscription subscription) {
+        boolean first;
+        synchronized (this) {
+            first = upstream == null;
+            if (first) {
+                upstream = subscription;
+            }
+        }
+        if (first) {
+            drain();
+        } else {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * Receives an item from the publisher.
+     *
+     * @param item  the CharSequence object to convert.
+     */
+    public void onNext(CharSequence item) {
+        inputs.offer(item);
+        drain();
+    }
+
+    /**
+     * Receives the error of the publisher. The error is signalled to the
+     * subscriber after the items received before it.
+     *
+     * @param throwable  the error.
+     */
+    public void onError(Throwable throwable) {
+        error = throwable;
+        done = true;
+        drain();
+    }
+
+    /**
+     * Receives the completion of the publisher. The completion is
+     * signalled to the subscriber after all items.
+     */
+    public void onComplete() {
+        done = true;
+        drain();
+    }
+
+    /**
+     * Schedules the drain loop unless it is scheduled or running. If the
+     * executor rejects the drain loop, the subscriber is signalled the
+     * error on the calling thread.
+     */
+    private void drain() {
+        if (work.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        while (true) {
+            try {
+                executor.execute(new Runnable() {
+                        public void run() {
+                            drainLoop();
+                        }
+                    });
+                return;
+            } catch (RejectedExecutionException exception) {
+                // the drain loop is not running, so this thread may
+                // terminate in its place
+                if (!terminated && downstream != null) {
+                    terminate(exception);
+                }
+            }
+            missed = work.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Delivers the converted strings while the subscriber demands them,
+     * converts the queued items, and requests more items. Only one
+     * thread runs this loop at a time.
+     */
+    private void drainLoop() {
+        int missed = 1;
+        while (true) {
+            if (!terminated) {
+                try {
+                    drainOnce();
+                } catch (Throwable throwable) {
+                    terminate(throwable);
+                }
+            }
+            missed = work.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Runs one step of the drain loop.
+     *
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private void drainOnce() throws IOException {
+        Flow.Subscriber<? super String> subscriber = downstream;
+        if (subscriber == null) {
+            return;
+        }
+        if (cancelled) {
+            terminated = true;
+            if (upstream != null) {
+                upstream.cancel();
+            }
+            inputs.clear();
+            outputs.clear();
+            return;
+        }
+        if (requestError != null) {
+            terminate(requestError);
+            return;
+        }
+        while (true) {
+            while (!outputs.isEmpty() && demand.get() > 0) {
+                demand.decrementAndGet();
+                held--;
+                subscriber.onNext(outputs.removeFirst());
+                if (cancelled) {
+                    return;
+                }
+            }
+            if (!outputs.isEmpty() || inputs.isEmpty() ||
+                demand.get() == 0) {
+                break;
+            }
+            convertBatch();
+        }
+        if (done && inputs.isEmpty() && outputs.isEmpty()) {
+            terminate(error);
+            return;
+        }
+        Flow.Subscription subscription = upstream;
+        if (subscription != null && !done && held <= bufferSize / 2) {
+            int count = bufferSize - held;
+            held = bufferSize;
+            subscription.request(count);
+        }
+    }
+
+    /**
+     * Converts up to the batch size of the queued items.
+     *
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private void convertBatch() throws IOException {
+        List<CharSequence> batch = new ArrayList<CharSequence>(batchSize);
+        while (batch.size() < batchSize && !inputs.isEmpty()) {
+            batch.add(inputs.poll());
+        }
+        if (session == null) {
+            session = engine.openSession();
+        }
+        KanjiBatch results = session.convertAll(batch);
+        for (int index = 0; index < results.size(); index++) {
+            outputs.add(results.get(index));
+        }
+    }
+
+    /**
+     * Signals the completion or the error to the subscriber, and cancels
+     * the subscription of the publisher on an error.
+     *
+     * @param throwable  the error, or null for the completion.
+     */
+    private void terminate(Throwable throwable) {
+        terminated = true;
+        inputs.clear();
+        outputs.clear();
+        if (throwable == null) {
+            downstream.onComplete();
+            return;
+        }
+        if (!done && upstream != null) {
+            upstream.cancel();
+        }
+        downstream.onError(throwable);
+    }
+
+    /**
+     * The subscription of the subscriber.
+     */
+    private class Subscription implements Flow.Subscription {
+
+        public void request(long n) {
+            if (n <= 0) {
+                requestError = new IllegalArgumentException(
+                    "KakasiProcessor: Illegal request: " + n);
+                drain();
+                return;
+            }
+            while (true) {
+                long current = demand.get();
+                long next = current + n;
+                if (next < 0) {
+                    next = Long.MAX_VALUE;
+                }
+                if (demand.compareAndSet(current, next)) {
+                    break;
+                }
+            }
+            drain();
+        }
+
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+    }
+
+}
@@ -0,0 +1,395 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An HTTP server that converts the request bodies. The requests are
+ * handled on virtual threads if the Java runtime supports them, or on a
+ * pool of threads otherwise. All requests share the kanwa dictionary,
+ * and the sessions of the engines are reused by the requests.
+ * <p>
+ * The body of a POST request is converted, and the result is returned
+ * as "text/plain; charset=UTF-8". The body is decoded in the charset of
+ * the Content-Type header, or in UTF-8. The paths are:
+ * <dl>
+ * <dt>/convert<dd>converts in the modes of the command line.
+ * <dt>/romaji<dd>adds -Ja -Ha -Ka.
+ * <dt>/hiragana<dd>adds -JH -KH.
+ * <dt>/katakana<dd>adds -JK -HK.
+ * </dl>
+ * With the "/batch" prefix, like "/batch/romaji", each line of the body
+ * is converted separately, and the results are returned one per line.
+ * <p>
+ * The mode options of the command line can be added to each request in
+ * the query string, separated by "&amp;", like
+ * "/convert?Ja&amp;s&amp;rkunrei". The engines are cached for the
+ * recently used options, whatever their order is.
+ *
+ * @see Kakasi#main(String[])
+ */
+class KakasiServer {
+
+    /** The maximum size of a request body */
+    private static final int MAX_BODY_SIZE = 16 << 20;
+
+    /** The maximum number of the cached engines */
+    private static final int MAX_ENGINES = 256;
+
+    /** The options whose order matters, since -w sets up the others */
+    private static final String CONVERTER_OPTIONS = "JHKw";
+
+    private static final String BATCH_PREFIX = "/batch";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final Map presets = new HashMap();
+
+    static {
+        presets.put("/convert", new String[0]);
+        presets.put("/romaji", new String[] {"-Ja", "-Ha", "-Ka"});
+        presets.put("/hiragana", new String[] {"-JH", "-KH"});
+        presets.put("/katakana", new String[] {"-JK", "-HK"});
+    }
+
+    private final Kakasi kakasi;
+    // the least recently used engine is dropped first
+    private final Map pools = Collections.synchronizedMap(
+        new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > MAX_ENGINES;
+            }
+        });
+
+    /**
+     * Constructs a KakasiServer object.
+     *
+     * @param kakasi  the Kakasi object whose modes are the default modes.
+     */
+    KakasiServer(Kakasi kakasi) {
+        this.kakasi = kakasi;
+    }
+
+    /**
+     * Starts the server on the specified port. The server runs until the
+     * Java runtime exits.
+     *
+     * @param port  the port number.
+     * @exception  IOException  if the server could not be started.
+     */
+    void start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/", new HttpHandler() {
+                public void handle(HttpExchange exchange)
+                    throws IOException {
+                    try {
+                        KakasiServer.this.handle(exchange);
+                    } finally {
+                        exchange.close();
+                    }
+                }
+            });
+        ExecutorService executor = createVirtualThreadExecutor();
+        String threads = "virtual threads";
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool();
+            threads = "a thread pool";
+        }
+        server.setExecutor(executor);
+        server.start();
+        System.err.println("kakasi: listening on port " +
+                           server.getAddress().getPort() + " with " +
+                           threads);
+    }
+
+    /**
+     * Creates the executor that runs each task on a new virtual thread.
+     * The executor is looked up reflectively, since virtual threads are
+     * not supported before Java 21.
+     *
+     * @return  the executor, or null if virtual threads are not
+     *           supported.
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod(
+                "newVirtualThreadPerTaskExecutor", new Class[0]);
+            return (ExecutorService)method.invoke(null, new Object[0]);
+        } catch (Exception exception) {
+            return null;
+        }
+    }
+
+    /**
+     * Handles the request.
+     *
+     * @param exchange  the request and the response.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        boolean batch = path.startsWith(BATCH_PREFIX + "/");
+        if (batch) {
+            path = path.substring(BATCH_PREFIX.length());
+        }
+        String[] preset = (String[])presets.get(path);
+        if (preset == null) {
+            send(exchange, 404, "Not Found: " + path);
+            return;
+        }
+        if (!exchange.getRequestMethod().equals("POST")) {
+            exchange.getResponseHeaders().set("Allow", "POST");
+            send(exchange, 405, "Method Not Allowed");
+            return;
+        }
+        SessionPool pool;
+        try {
+            pool = getSessionPool(path, preset,
+                               exchange.getRequestURI().getRawQuery());
+        } catch (IllegalArgumentException exception) {
+            send(exchange, 400, getMessage(exception));
+            return;
+        } catch (RuntimeException exception) {
+            send(exchange, 500, getMessage(exception));
+            return;
+        }
+        String text = readBody(exchange);
+        if (text == null) {
+            send(exchange, 413, "Request Entity Too Large");
+            return;
+        }
+        StringBuilder result = new StringBuilder(text.length() * 2);
+        KakasiSession session = pool.borrowSession();
+        try {
+            if (batch) {
+                convertLines(session, text, result);
+            } else {
+                session.convert(text, result);
+            }
+        } catch (RuntimeException exception) {
+            // the session may be left in the middle of the conversion,
+            // so it is not reused
+            send(exchange, 500, getMessage(exception));
+            return;
+        }
+        pool.returnSession(session);
+        send(exchange, 200, result);
+    }
+
+    /**
+     * Gets the message of the exception for the response body.
+     */
+    private static String getMessage(RuntimeException exception) {
+        String message = exception.getMessage();
+        return message == null ? exception.toString() : message;
+    }
+
+    /**
+     * Converts each line of the text, and appends the results one per
+     * line.
+     *
+     * @param session  the session.
+     * @param text  the lines to convert.
+     * @param result  the destination of the results.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private static void convertLines(KakasiSession session, String text,
+                                     StringBuilder result)
+        throws IOException {
+        List<String> lines = new ArrayList<String>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            int next = end < 0 ? text.length() : end + 1;
+            if (end < 0) {
+                end = text.length();
+            }
+            if (end > start && text.charAt(end - 1) == '\r') {
+                end--;
+            }
+            lines.add(text.substring(start, end));
+            start = next;
+        }
+        KanjiBatch converted = session.convertAll(lines);
+        for (int index = 0; index < converted.size(); index++) {
+            result.append(converted.getText(), converted.getStart(index),
+                          converted.getEnd(index));
+            result.append('\n');
+        }
+    }
+
+    /**
+     * Gets the session pool of the engine of the path and the options.
+     * The pools are cached for each path and set of options, and the
+     * least recently used one is dropped when there are too many.
+     *
+     * @param path  the path.
+     * @param preset  the options of the path.
+     * @param query  the raw query string, or null.
+     * @return  the session pool.
+     * @exception  IllegalArgumentException  if an option is not valid.
+     */
+    private SessionPool getSessionPool(String path, String[] preset,
+                                       String query) {
+        List options = parseOptions(query);
+        StringBuffer key = new StringBuffer(path);
+        for (int index = 0; index < options.size(); index++) {
+            key.append(index == 0 ? '?' : '&').append(options.get(index));
+        }
+        SessionPool pool = (SessionPool)pools.get(key.toString());
+        if (pool != null) {
+            return pool;
+        }
+        Kakasi config = kakasi.copy();
+        for (int index = 0; index < preset.length; index++) {
+            Kakasi.setupMode(config, preset[index]);
+        }
+        for (int index = 0; index < options.size(); index++) {
+            Kakasi.setupMode(config, (String)options.get(index));
+        }
+        pool = new KakasiEngine(config).getSessionPool();
+        pools.put(key.toString(), pool);
+        return pool;
+    }
+
+    /**
+     * Parses the options of the query string, and sorts them so that
+     * the same options in another order give the same list. Only the
+     * options whose order does not matter change their places: the
+     * options of the same letter, and the converter options with -w,
+     * are kept in their order.
+     *
+     * @param query  the raw query string, or null.
+     * @return  the list of the options, each starting with '-'.
+     */
+    private static List parseOptions(String query) {
+        List options = new ArrayList();
+        if (query == null) {
+            return options;
+        }
+        String[] strings = query.split("&");
+        for (int index = 0; index < strings.length; index++) {
+            String option = URLDecoder.decode(strings[index], UTF_8);
+            if (option.length() == 0) {
+                continue;
+            }
+            options.add(option.charAt(0) == '-' ? option : "-" + option);
+        }
+        // the sort is stable
+        Collections.sort(options, new Comparator() {
+                public int compare(Object object1, Object object2) {
+                    return getGroup((String)object1) -
+                        getGroup((String)object2);
+                }
+            });
+        return options;
+    }
+
+    /**
+     * Gets the group of the option for parseOptions(String). The options
+     * of different groups give the same modes in any order.
+     *
+     * @param option  the option starting with '-'.
+     */
+    private static int getGroup(String option) {
+        if (option.length() < 2) {
+            return 0;
+        }
+        char letter = option.charAt(1);
+        return CONVERTER_OPTIONS.indexOf(letter) >= 0 ?
+            CONVERTER_OPTIONS.charAt(0) : letter;
+    }
+
+    /**
+     * Reads the request body, and decodes it in the charset of the
+     * Content-Type header.
+     *
+     * @param exchange  the request and the response.
+     * @return  the body, or null if it is too large.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private static String readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputStream in = exchange.getRequestBody();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) >= 0) {
+            if (bytes.size() + count > MAX_BODY_SIZE) {
+                return null;
+            }
+            bytes.write(buffer, 0, count);
+        }
+        Charset charset = UTF_8;
+        String type = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (type != null) {
+            int at = type.toLowerCase().indexOf("charset=");
+            if (at >= 0) {
+                String name = type.substring(at + 8);
+                int end = name.indexOf(';');
+                name = (end < 0 ? name : name.substring(0, end)).trim();
+                try {
+                    charset = Charset.forName(name.replace("\"", ""));
+                } catch (IllegalArgumentException exception) {
+                    // unknown charset; the body is decoded in UTF-8
+                }
+            }
+        }
+        return new String(bytes.toByteArray(), charset);
+    }
+
+    /**
+     * Sends the response.
+     *
+     * @param exchange  the request and the response.
+     * @param status  the status code.
+     * @param body  the response body.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private static void send(HttpExchange exchange, int status,
+                             CharSequence body) throws IOException {
+        byte[] bytes = body.toString().getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type",
+                                          "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status,
+                                     bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            OutputStream out = exchange.getResponseBody();
+            out.write(bytes);
+            out.close();
+        }
+    }
+
+}
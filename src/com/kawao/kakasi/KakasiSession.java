@@ -0,0 +1,133 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * A conversion session of a KakasiEngine object. A session owns a copy
+ * of the Kakasi object of the engine, whose converters and buffers are
+ * reused for every conversion; only the kanwa dictionary is shared.
+ * The modes of a session are those of the engine, and cannot be
+ * changed.
+ * <p>
+ * A session must be used by one thread at a time. Its methods wait for
+ * other sessions only while the dictionary entries of a kanji are read
+ * for the first time.
+ *
+ * @see KakasiEngine#getSession()
+ * @see KakasiEngine#openSession()
+ */
+public final class KakasiSession {
+
+    private final Kakasi kakasi;
+
+    /**
+     * The constructor is not public.
+     *
+     * @param kakasi  the Kakasi object owned by this session.
+     */
+    KakasiSession(Kakasi kakasi) {
+        this.kakasi = kakasi;
+    }
+
+    /**
+     * Converts the specified string.
+     *
+     * @param string  the string to convert.
+     * @return  the converted string.
+     * @exception  IOException  if an I/O error occurred.
+     * @see Kakasi#doString(String)
+     */
+    public String doString(String string) throws IOException {
+        return kakasi.doString(string);
+    }
+
+    /**
+     * Converts the specified CharSequence object, and appends the result
+     * to the Appendable object.
+     *
+     * @param in  the CharSequence object to convert.
+     * @param out  the Appendable object.
+     * @exception  IOException  if an I/O error occurred.
+     * @see Kakasi#convert(CharSequence, Appendable)
+     */
+    public void convert(CharSequence in, Appendable out) throws IOException {
+        kakasi.convert(in, out);
+    }
+
+    /**
+     * Converts the specified portion of the array, and appends the result
+     * to the StringBuilder object.
+     *
+     * @param chars  the characters to convert.
+     * @param offset  the offset of the first character.
+     * @param length  the number of characters.
+     * @param out  the StringBuilder object.
+     * @exception  IOException  if an I/O error occurred.
+     * @see Kakasi#convert(char[], int, int, StringBuilder)
+     */
+    public void convert(char[] chars, int offset, int length,
+                        StringBuilder out) throws IOException {
+        kakasi.convert(chars, offset, length, out);
+    }
+
+    /**
+     * Converts each element of the specified list.
+     *
+     * @param inputs  the list of CharSequence objects to convert.
+     * @return  the results.
+     * @exception  IOException  if an I/O error occurred.
+     * @see Kakasi#convertAll(List)
+     */
+    public KanjiBatch convertAll(List<? extends CharSequence> inputs)
+        throws IOException {
+        return kakasi.convertAll(inputs);
+    }
+
+    /**
+     * Converts the characters read from the reader, and writes the result
+     * to the writer.
+     *
+     * @param in  the source reader.
+     * @param out  the destination writer.
+     * @exception  IOException  if an I/O error occurred.
+     * @see FileConverter
+     */
+    void convert(Reader in, Writer out) throws IOException {
+        kakasi.convert(in, out);
+    }
+
+    /**
+     * Converts the specified range of the list, and appends the results
+     * to the text.
+     *
+     * @param inputs  the list of CharSequence objects to convert.
+     * @param from  the index of the first element.
+     * @param to  the index after the last element.
+     * @param text  the text that the results are appended to.
+     * @param offsets  the array that the offsets are stored to.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    void convertAll(List<? extends CharSequence> inputs, int from, int to,
+                    StringBuilder text, int[] offsets) throws IOException {
+        kakasi.convertAll(inputs, from, to, text, offsets);
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.io.Writer;
+import java.io.IOException;
+
+/**
+ * A Writer class that converts the Hiragana written by a converter
+ * and writes the result to another writer. It is used instead of the
+ * CompoundConverter so that the readings are converted as they are
+ * written, without the pipe.
+ * <p>
+ * The characters that are not converted are written as markup, as the
+ * CompoundConverter does. An object of this class is used by one
+ * thread at a time.
+ *
+ * @see Kakasi#setupKanjiConverter(String)
+ */
+abstract class KanaWriter extends Writer {
+
+    /** The destination writer */
+    protected Writer output;
+
+    /**
+     * Starts the conversion of a word.
+     *
+     * @param newOutput  the destination writer.
+     */
+    void start(Writer newOutput) {
+        output = newOutput;
+    }
+
+    /**
+     * Writes the characters that are kept for the following characters,
+     * and ends the conversion of the word.
+     *
+     * @exception  IOException  if an I/O error occurred.
+     */
+    abstract void finish() throws IOException;
+
+    /**
+     * Write a single character.
+     *
+     * @param c  int specifying a character to be written.
+     * @exception  IOException  If an I/O error occurs
+     */
+    public abstract void write(int c) throws IOException;
+
+    /**
+     * Write a portion of an array of characters.
+     *
+     * @param cbuf  Array of characters
+     * @param off  Offset from which to start writing characters
+     * @param len  Number of characters to write
+     * @exception  IOException  If an I/O error occurs
+     */
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        int end = off + len;
+        for (int index = off; index < end; index++) {
+            write(cbuf[index]);
+        }
+    }
+
+    /**
+     * Write a portion of a string.
+     *
+     * @param str  A String
+     * @param off  Offset from which to start writing characters
+     * @param len  Number of characters to write
+     * @exception  IOException  If an I/O error occurs
+     */
+    public void write(String str, int off, int len) throws IOException {
+        int end = off + len;
+        for (int index = off; index < end; index++) {
+            write(str.charAt(index));
+        }
+    }
+
+    /**
+     * Flush the destination writer. The characters that are kept for
+     * the following characters are not written.
+     *
+     * @exception  IOException  If an I/O error occurs
+     */
+    public void flush() throws IOException {
+        if (output != null) {
+            output.flush();
+        }
+    }
+
+    /**
+     * Ends the conversion. The destination writer is not closed.
+     *
+     * @exception  IOException  If an I/O error occurs
+     */
+    public void close() throws IOException {
+        if (output != null) {
+            finish();
+            output = null;
+        }
+    }
+
+}
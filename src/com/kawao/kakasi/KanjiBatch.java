@@ -0,0 +1,84 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+/**
+ * An object of this class holds the results of a batch conversion.
+ * The results are stored one after another in one text, and each result
+ * is given by its offsets in the text. String objects are created only
+ * when they are asked for.
+ *
+ * @see Kakasi#convertAll(java.util.List)
+ */
+public class KanjiBatch {
+
+    private final StringBuilder text;
+    private final int[] offsets;
+
+    /**
+     * The constructor is not public.
+     *
+     * @param text  the text that holds all results.
+     * @param offsets  the offsets of the results, followed by the length
+     *                 of the text.
+     */
+    KanjiBatch(StringBuilder text, int[] offsets) {
+        this.text = text;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Gets the number of results.
+     */
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Gets the text that holds all results. The text must not be changed.
+     */
+    public CharSequence getText() {
+        return text;
+    }
+
+    /**
+     * Gets the offset of the first character of the specified result.
+     *
+     * @param index  the index of the input.
+     */
+    public int getStart(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * Gets the offset after the last character of the specified result.
+     *
+     * @param index  the index of the input.
+     */
+    public int getEnd(int index) {
+        return offsets[index + 1];
+    }
+
+    /**
+     * Gets the specified result as a string.
+     *
+     * @param index  the index of the input.
+     */
+    public String get(int index) {
+        return text.substring(offsets[index], offsets[index + 1]);
+    }
+
+}
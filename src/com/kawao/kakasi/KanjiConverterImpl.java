@@ -37,6 +37,8 @@ class KanjiConverterImpl {
 
     private boolean heikiMode;
     private boolean furiganaMode;
+    private FuriganaFormat furiganaFormat = FuriganaFormat.PLAIN;
+    private LatticeSegmenter latticeSegmenter;
 
     /**
      * Constructs a KanjiConverterImpl object.
@@ -79,6 +81,41 @@ class KanjiConverterImpl {
         return furiganaMode;
     }
 
+    /**
+     * Sets the furigana format property. The default value is
+     * FuriganaFormat.PLAIN.
+     *
+     * @param newFormat  new furigana format.
+     */
+    void setFuriganaFormat(FuriganaFormat newFormat) {
+        furiganaFormat = newFormat;
+    }
+
+    /**
+     * Gets the furigana format property value.
+     */
+    FuriganaFormat getFuriganaFormat() {
+        return furiganaFormat;
+    }
+
+    /**
+     * Sets the lattice mode property. The default value is false.
+     *
+     * @param newMode  if true, words are chosen by the LatticeSegmenter
+     *                 instead of the greedy longest match.
+     */
+    void setLatticeMode(boolean newMode) {
+        latticeSegmenter =
+            newMode ? new LatticeSegmenter(kanwaDictionary) : null;
+    }
+
+    /**
+     * Gets the lattice mode property value.
+     */
+    boolean isLatticeMode() {
+        return latticeSegmenter != null;
+    }
+
     /**
      * Converts the Kanji word into the Hiragana word.
      *
@@ -88,17 +125,17 @@ class KanjiConverterImpl {
      * @exception  IOException  if an I/O error occurred.
      */
     boolean toHiragana(KanjiInput input, Writer output) throws IOException {
-        char key = itaijiDictionary.get((char)input.get());
-        Iterator iterator = kanwaDictionary.lookup(key);
-        if (iterator == null) {
-            return false;
+        if (latticeSegmenter != null) {
+            return toHiraganaByLattice(input, output);
         }
+        char key = itaijiDictionary.get((char)input.get());
+        KanjiYomiIndex kanjiYomis = kanwaDictionary.lookupIndex(key);
         Set yomiSet = new HashSet();
         String rest = null;
         int restLength = 0;
         int resultLength = 0;
-        while (iterator.hasNext()) {
-            KanjiYomi kanjiYomi = (KanjiYomi)iterator.next();
+        for (int entry = 0; entry < kanjiYomis.size(); entry++) {
+            KanjiYomi kanjiYomi = kanjiYomis.get(entry);
             int length = kanjiYomi.getLength();
             if (rest == null) {
                 char[] chars = new char[length + 1];
@@ -127,6 +164,63 @@ class KanjiConverterImpl {
         if (yomiSet.isEmpty()) {
             return false;
         }
+        writeHiragana(input, output, key, rest, resultLength, yomiSet);
+        return true;
+    }
+
+    /**
+     * Converts the Kanji word chosen by the LatticeSegmenter into
+     * the Hiragana word.
+     *
+     * @param input  the input object.
+     * @param output  the output writer object.
+     * @return  false if no character is converted, otherwise true.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private boolean toHiraganaByLattice(KanjiInput input, Writer output)
+        throws IOException {
+        int resultLength = latticeSegmenter.next(input);
+        if (resultLength < 0) {
+            return false;
+        }
+        char key = latticeSegmenter.getKey();
+        String rest = latticeSegmenter.getRest(resultLength + 1);
+        Set yomiSet = new HashSet();
+        if (isHeikiMode()) {
+            KanjiYomiIndex kanjiYomis = kanwaDictionary.lookupIndex(key);
+            for (int entry = 0; entry < kanjiYomis.size(); entry++) {
+                KanjiYomi kanjiYomi = kanjiYomis.get(entry);
+                if (kanjiYomi.getLength() != resultLength) {
+                    continue;
+                }
+                String yomi = kanjiYomi.getYomiFor(rest);
+                if (yomi != null) {
+                    yomiSet.add(yomi);
+                }
+            }
+        } else {
+            yomiSet.add(latticeSegmenter.getKanjiYomi().getYomiFor(rest));
+        }
+        writeHiragana(input, output, key, rest, resultLength, yomiSet);
+        return true;
+    }
+
+    /**
+     * Consumes the Kanji word and writes the Hiragana word.
+     *
+     * @param input  the input object.
+     * @param output  the output writer object.
+     * @param key  the first character of the word.
+     * @param rest  the characters following the first character.
+     * @param resultLength  the length of the word excluding the first
+     *                      character.
+     * @param yomiSet  the yomi strings of the word.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private void writeHiragana(KanjiInput input, Writer output, char key,
+                               String rest, int resultLength, Set yomiSet)
+        throws IOException {
+        int restLength = rest == null ? 0 : rest.length();
         char additionalChar = 0;
         if (resultLength > 0  && restLength > resultLength &&
             rest.charAt(resultLength - 1) == '\u3063') {
@@ -138,12 +232,14 @@ class KanjiConverterImpl {
             }
         }
         input.consume(resultLength + 1);
-        if (isFuriganaMode()) {
+        FuriganaFormat format = furiganaMode ? furiganaFormat : null;
+        if (format != null) {
+            KanjiOutput.writeMarkup(output, format.getOpen());
             output.write(key);
             if (resultLength > 0) {
                 output.write(rest, 0, resultLength);
             }
-            output.write('[');
+            KanjiOutput.writeMarkup(output, format.getSeparator());
         }
         if (yomiSet.size() == 1) {
             output.write((String)yomiSet.iterator().next());
@@ -166,10 +262,9 @@ class KanjiConverterImpl {
             }
             output.write('}');
         }
-        if (isFuriganaMode()) {
-            output.write(']');
+        if (format != null) {
+            KanjiOutput.writeMarkup(output, format.getClose());
         }
-        return true;
     }
 
     /**
@@ -182,16 +277,20 @@ class KanjiConverterImpl {
      * @exception  IOException  if an I/O error occurred.
      */
     boolean toKanji(KanjiInput input, Writer output) throws IOException {
-        char key = itaijiDictionary.get((char)input.get());
-        Iterator iterator = kanwaDictionary.lookup(key);
-        if (iterator == null) {
-            return false;
+        if (latticeSegmenter != null) {
+            int resultLength = Math.max(latticeSegmenter.next(input), 0);
+            String rest = latticeSegmenter.getRest(resultLength + 1);
+            writeKanji(input, output, latticeSegmenter.getKey(), rest,
+                       resultLength);
+            return true;
         }
+        char key = itaijiDictionary.get((char)input.get());
+        KanjiYomiIndex kanjiYomis = kanwaDictionary.lookupIndex(key);
         String rest = null;
         int restLength = 0;
         int resultLength = 0;
-        while (iterator.hasNext()) {
-            KanjiYomi kanjiYomi = (KanjiYomi)iterator.next();
+        for (int entry = 0; entry < kanjiYomis.size(); entry++) {
+            KanjiYomi kanjiYomi = kanjiYomis.get(entry);
             int length = kanjiYomi.getLength();
             if (rest == null) {
                 char[] chars = new char[length + 1];
@@ -212,6 +311,25 @@ class KanjiConverterImpl {
                 break;
             }
         }
+        writeKanji(input, output, key, rest, resultLength);
+        return true;
+    }
+
+    /**
+     * Consumes the Kanji word and writes it as it is.
+     *
+     * @param input  the input object.
+     * @param output  the output writer object.
+     * @param key  the first character of the word.
+     * @param rest  the characters following the first character.
+     * @param resultLength  the length of the word excluding the first
+     *                      character.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private void writeKanji(KanjiInput input, Writer output, char key,
+                            String rest, int resultLength)
+        throws IOException {
+        int restLength = rest == null ? 0 : rest.length();
         if (resultLength > 0  && restLength > resultLength &&
             rest.charAt(resultLength - 1) == '\u3063') {
             char nextCh = rest.charAt(resultLength);
@@ -225,7 +343,6 @@ class KanjiConverterImpl {
         if (resultLength > 0) {
             output.write(rest, 0, resultLength);
         }
-        return true;
     }
 
 }
@@ -20,7 +20,6 @@ package com.kawao.kakasi;
 import java.io.Reader;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
-import java.io.StringReader;
 import java.io.Writer;
 import java.io.IOException;
 import java.util.Set;
@@ -28,6 +27,16 @@ import java.util.HashSet;
 
 /**
  * An object of this class supplies inputs characters for the conversion.
+ * <p>
+ * The characters read ahead are kept in a window of a char array, which
+ * is filled by reading a block of characters at a time. Consuming
+ * characters only moves the start of the window. The characters in
+ * memory are copied from the CharSequence without a reader, and an array
+ * of characters is used as the window itself.
+ * <p>
+ * The methods used in the conversion are synchronized, so that an object
+ * of this class can be shared by threads. The conversion within a single
+ * thread uses a LocalKanjiInput object, that has no locks.
  * 
  * @see Kakasi#getInput()
  * @author  Kawao, Tomoyuki (kawao@kawao.com)
@@ -35,13 +44,34 @@ import java.util.HashSet;
  */
 public class KanjiInput {
 
-    private final StringBuffer buffer = new StringBuffer();
+    /** The size of a block read from the reader */
+    private static final int BLOCK_SIZE = 4096;
+
+    /** The reader of the input set by a sequence or an array */
+    private static final Reader nullReader = new NullReader();
+
+    private char[] buffer = new char[BLOCK_SIZE];
+    private char[] ownBuffer = buffer;
+    private int start;
+    private int end;
     private int nextIndex;
+    private int position;
+    private int generation;
+    // the characters read in the source order, with the eaten whitespace
+    private int sourcePosition;
+    // the number of eaten whitespace characters at the head of the window
+    private int eatenCount;
+
+    private StringBuffer capture;
 
     private Reader reader;
+    private CharSequence sequence;
+    private int sequenceIndex;
 
     private boolean spaceEatMode;
 
+    private KanjiOutput idleOutput;
+
     private final char[] oneCharacter = new char[1];
 
     /**
@@ -56,7 +86,7 @@ public class KanjiInput {
      * @param string  the string object for input.
      */
     public void setInputString(String string) {
-        setReader(new StringReader(string));
+        setInput(string);
     }
 
     /**
@@ -66,7 +96,49 @@ public class KanjiInput {
      */
     public synchronized void setReader(Reader newReader) {
         reader = newReader;
-        buffer.setLength(0);
+        sequence = null;
+        buffer = ownBuffer;
+        start = 0;
+        end = 0;
+        position = 0;
+        sourcePosition = 0;
+        eatenCount = 0;
+        ++generation;
+    }
+
+    /**
+     * Sets input as the specified characters. The characters are copied
+     * from the sequence to the window as they are needed.
+     *
+     * @param newSequence  the characters for input.
+     */
+    synchronized void setInput(CharSequence newSequence) {
+        if (newSequence == null) {
+            throw new NullPointerException("newSequence");
+        }
+        setReader(nullReader);
+        sequence = newSequence;
+        sequenceIndex = 0;
+    }
+
+    /**
+     * Sets input as the specified portion of an array. The array is used
+     * as the window, so the characters must not be changed until the
+     * conversion ends. The array is copied only when the whitespace
+     * characters are moved in the space eat mode.
+     *
+     * @param chars  the characters for input.
+     * @param offset  the offset of the first character.
+     * @param length  the number of characters.
+     */
+    synchronized void setInput(char[] chars, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > chars.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        setReader(nullReader);
+        buffer = chars;
+        start = offset;
+        end = offset + length;
     }
 
     /**
@@ -79,6 +151,17 @@ public class KanjiInput {
         spaceEatMode = newMode;
     }
 
+    /**
+     * Sets the output object that is told when the reader has no
+     * characters to read without blocking.
+     *
+     * @param newOutput  the output object, or null.
+     * @see KanjiOutput#inputIdle()
+     */
+    void setIdleOutput(KanjiOutput newOutput) {
+        idleOutput = newOutput;
+    }
+
     /**
      * Gets the space eat mode property value.
      */
@@ -86,6 +169,73 @@ public class KanjiInput {
         return spaceEatMode;
     }
 
+    /**
+     * Gets the number of characters consumed since the reader was set.
+     */
+    synchronized int getPosition() {
+        return position;
+    }
+
+    /**
+     * Gets the number of characters consumed since the reader was set,
+     * without the lock.
+     */
+    final int getPositionUnlocked() {
+        return position;
+    }
+
+    /**
+     * Gets the offset in the source after the consumed characters. Unlike
+     * the position, the whitespace characters skipped within a word in
+     * the space eat mode are counted when the word is consumed.
+     */
+    synchronized int getSourcePosition() {
+        return sourcePosition;
+    }
+
+    /**
+     * Gets the offset in the source after the consumed characters,
+     * without the lock.
+     */
+    final int getSourcePositionUnlocked() {
+        return sourcePosition;
+    }
+
+    /**
+     * Gets the number of times the reader was set. Together with the
+     * position this identifies a character of the input.
+     */
+    synchronized int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Sets the buffer that receives the consumed characters. The
+     * whitespace characters skipped within a word in the space eat mode
+     * are received with the word, in the source order.
+     *
+     * @param newCapture  the buffer, or null to stop capturing.
+     */
+    synchronized void setCapture(StringBuffer newCapture) {
+        capture = newCapture;
+    }
+
+    /**
+     * Tests whether the input character is in the window, so that get()
+     * returns it without reading the reader.
+     */
+    synchronized boolean isBuffered() {
+        return isBufferedUnlocked();
+    }
+
+    /**
+     * Tests whether the input character is in the window, without the
+     * lock.
+     */
+    final boolean isBufferedUnlocked() {
+        return start < end;
+    }
+
     /**
      * Gets the input character. 
      *
@@ -94,18 +244,25 @@ public class KanjiInput {
      * @exception  IOException  If an I/O error occurs
      */
     synchronized int get() throws IOException {
+        return getUnlocked();
+    }
+
+    /**
+     * Gets the input character without the lock.
+     *
+     * @return  The character read, or -1 if the end of the stream has been
+     *           reached
+     * @exception  IOException  If an I/O error occurs
+     */
+    final int getUnlocked() throws IOException {
         if (reader == null) {
             setReader(new BufferedReader(new InputStreamReader(System.in)));
         }
-        if (buffer.length() == 0) {
-            int ch = reader.read();
-            if (ch < 0) {
-                return -1;
-            }
-            buffer.append((char)ch);
+        if (start == end && fill() < 0) {
+            return -1;
         }
         nextIndex = 1;
-        return buffer.charAt(0);
+        return buffer[start];
     }
 
     /**
@@ -116,7 +273,18 @@ public class KanjiInput {
      * @exception  IOException  If an I/O error occurs
      */
     synchronized int more() throws IOException {
-        return more(oneCharacter) > 0 ? oneCharacter[0] : -1;
+        return moreUnlocked();
+    }
+
+    /**
+     * Gets more input character without the lock.
+     * 
+     * @return The character read, or -1 if the end of the word or stream has
+     *         been reached.
+     * @exception  IOException  If an I/O error occurs
+     */
+    final int moreUnlocked() throws IOException {
+        return moreUnlocked(oneCharacter) > 0 ? oneCharacter[0] : -1;
     }
 
     /**
@@ -127,20 +295,25 @@ public class KanjiInput {
      * @exception  IOException  If an I/O error occurs
      */
     synchronized int more(char[] chars) throws IOException {
-        int bufferLength = buffer.length();
+        return moreUnlocked(chars);
+    }
+
+    /**
+     * Gets more input characters without the lock.
+     * 
+     * @param chars  destination buffer. 
+     * @return  The number of characters.
+     * @exception  IOException  If an I/O error occurs
+     */
+    final int moreUnlocked(char[] chars) throws IOException {
         int resultLength = 0;
         for (; resultLength < chars.length; nextIndex++) {
-            if (bufferLength <= nextIndex) {
-                int ch = reader.read();
-                if (ch < 0) {
-                    break;
-                }
-                buffer.append((char)ch);
-                ++bufferLength;
+            if (start + nextIndex >= end && fill() < 0) {
+                break;
             }
-            char ch = buffer.charAt(nextIndex);
+            char ch = buffer[start + nextIndex];
             if (Character.isWhitespace(ch)) {
-                if (!isSpaceEatMode()) {
+                if (!spaceEatMode) {
                     break;
                 }
             } else {
@@ -156,31 +329,181 @@ public class KanjiInput {
      * @param length  the length of characters to consume.
      */
     synchronized void consume(int length) {
-        if (isSpaceEatMode()) {
-            int start = 0;
-            int end = length;
-            for (int index = 1; index < end; index++) {
-                char ch = buffer.charAt(index);
+        consumeUnlocked(length);
+    }
+
+    /**
+     * Consumes the specified length of input characters without the lock.
+     *
+     * @param length  the length of characters to consume.
+     */
+    final void consumeUnlocked(int length) {
+        if (spaceEatMode) {
+            if (buffer != ownBuffer) {
+                ensureCapacity(0);
+            }
+            int consumeEnd = length;
+            for (int index = 0; index < consumeEnd; index++) {
+                char ch = buffer[start + index];
+                if (index > 0 && Character.isWhitespace(ch)) {
+                    consumeEnd++;
+                }
+                if (index >= eatenCount) {
+                    // not counted yet when it was eaten before
+                    ++sourcePosition;
+                    if (capture != null) {
+                        capture.append(ch);
+                    }
+                }
+            }
+            // keep the skipped whitespace characters just before the rest
+            int newStart = consumeEnd;
+            for (int index = consumeEnd - 1; index > 0; index--) {
+                char ch = buffer[start + index];
                 if (Character.isWhitespace(ch)) {
-                    buffer.setCharAt(start++, ch);
-                    end++;
+                    buffer[start + --newStart] = ch;
                 }
             }
-            buffer.delete(start, end);
+            eatenCount = consumeEnd - newStart +
+                Math.max(0, eatenCount - consumeEnd);
+            start += newStart;
+            position += newStart;
         } else {
-            buffer.delete(0, length);
+            int eaten = Math.min(eatenCount, length);
+            if (capture != null) {
+                capture.append(buffer, start + eaten, length - eaten);
+            }
+            eatenCount -= eaten;
+            sourcePosition += length - eaten;
+            start += length;
+            position += length;
         }
         nextIndex = 0;
     }
 
+    /**
+     * Reads a block of characters from the reader to the end of the window.
+     * The window is moved to the head of the array, or the array is
+     * enlarged, when there is no room after the window.
+     *
+     * @return  the number of characters read, or -1 if the end of the stream
+     *           has been reached.
+     * @exception  IOException  If an I/O error occurs
+     */
+    private int fill() throws IOException {
+        if (buffer != ownBuffer) {
+            // the array set as input has all characters
+            return -1;
+        }
+        ensureCapacity(BLOCK_SIZE);
+        int length;
+        if (sequence != null) {
+            length = Math.min(buffer.length - end,
+                              sequence.length() - sequenceIndex);
+            if (length <= 0) {
+                return -1;
+            }
+            getChars(sequence, sequenceIndex, sequenceIndex + length,
+                     buffer, end);
+            sequenceIndex += length;
+        } else {
+            if (idleOutput != null && idleOutput.isIdleFlushMode() &&
+                !reader.ready()) {
+                idleOutput.inputIdle();
+            }
+            length = reader.read(buffer, end, buffer.length - end);
+        }
+        if (length > 0) {
+            end += length;
+        }
+        return length;
+    }
+
+    /**
+     * Copies the characters of the sequence to the array.
+     *
+     * @param source  the sequence.
+     * @param sourceStart  the index of the first character to copy.
+     * @param sourceEnd  the index after the last character to copy.
+     * @param destination  the array.
+     * @param destinationStart  the index in the array.
+     */
+    private static void getChars(CharSequence source,
+                                 int sourceStart, int sourceEnd,
+                                 char[] destination, int destinationStart) {
+        if (source instanceof String) {
+            ((String)source).getChars(sourceStart, sourceEnd,
+                                      destination, destinationStart);
+        } else if (source instanceof StringBuilder) {
+            ((StringBuilder)source).getChars(sourceStart, sourceEnd,
+                                             destination, destinationStart);
+        } else if (source instanceof StringBuffer) {
+            ((StringBuffer)source).getChars(sourceStart, sourceEnd,
+                                            destination, destinationStart);
+        } else {
+            for (int index = sourceStart; index < sourceEnd; index++) {
+                destination[destinationStart++] = source.charAt(index);
+            }
+        }
+    }
+
+    /**
+     * Makes room for the specified number of characters after the window.
+     * If the window is in the array set as input, it is copied to the
+     * own array of this object.
+     *
+     * @param length  the number of characters.
+     */
+    private void ensureCapacity(int length) {
+        if (buffer == ownBuffer && buffer.length - end >= length) {
+            return;
+        }
+        int windowLength = end - start;
+        char[] newBuffer = ownBuffer;
+        if (windowLength + length > ownBuffer.length) {
+            newBuffer = new char[Math.max(ownBuffer.length * 2,
+                                          windowLength + length)];
+        }
+        System.arraycopy(buffer, start, newBuffer, 0, windowLength);
+        buffer = newBuffer;
+        ownBuffer = newBuffer;
+        start = 0;
+        end = windowLength;
+    }
+
     /**
      * Creates a Writer object that supplies inputs for this object.
      */
     Writer createConnectedWriter() {
-        reader = new NullReader();
+        reader = nullReader;
         return new ConnectedWriter();
     }
 
+    /**
+     * Appends the characters written to the connected writer.
+     *
+     * @param chars  the characters.
+     * @param offset  the offset of the characters.
+     * @param length  the number of characters.
+     */
+    synchronized void append(char[] chars, int offset, int length) {
+        appendUnlocked(chars, offset, length);
+    }
+
+    /**
+     * Appends the characters written to the connected writer without
+     * the lock.
+     *
+     * @param chars  the characters.
+     * @param offset  the offset of the characters.
+     * @param length  the number of characters.
+     */
+    final void appendUnlocked(char[] chars, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(chars, offset, buffer, end, length);
+        end += length;
+    }
+
     /**
      * Nothing can be read from object of this class.
      */
@@ -201,9 +524,7 @@ public class KanjiInput {
     private class ConnectedWriter extends Writer {
         
         public void write(char cbuf[], int off, int len) {
-            synchronized (KanjiInput.this) {
-                buffer.append(cbuf, off, len);
-            }
+            KanjiInput.this.append(cbuf, off, len);
         }
 
         public void flush() {
@@ -24,6 +24,10 @@ import java.io.IOException;
 
 /**
  * An object of this class is used as destination of the conversion.
+ * <p>
+ * The methods used in the conversion are synchronized, so that an object
+ * of this class can be shared by threads. The conversion within a single
+ * thread uses a LocalKanjiOutput object, that has no locks.
  * 
  * @see Kakasi#getOutput()
  * @author  Kawao, Tomoyuki (kawao@kawao.com)
@@ -34,11 +38,19 @@ public class KanjiOutput extends Writer {
     private Writer writer;
 
     private boolean autoFlushMode = true;
+    private int autoFlushSize;
+    private long autoFlushDelay;
+    private long unflushedCount;
+    private long unflushedTime;
+
+    private boolean htmlEscapeMode;
 
     private boolean splitMode;
     private boolean lastWasSpace;
     private boolean outSeparator;
 
+    private char[] stringBuffer;
+
     /**
      * The constructor is not public.
      */
@@ -53,6 +65,7 @@ public class KanjiOutput extends Writer {
     public synchronized void setWriter(Writer newWriter) {
         writer = newWriter;
         lastWasSpace = true;
+        unflushedCount = 0;
     }
 
     /**
@@ -73,6 +86,128 @@ public class KanjiOutput extends Writer {
         return autoFlushMode;
     }
 
+    /**
+     * Sets the auto flush size property value. The default value is 0.
+     * If the value is positive, the output buffer is flushed at a newline
+     * only after the specified number of characters are written since the
+     * last flush, or after the auto flush delay.
+     *
+     * @param newSize  the number of characters.
+     * @see #setAutoFlushDelay(long)
+     */
+    public void setAutoFlushSize(int newSize) {
+        autoFlushSize = newSize;
+    }
+
+    /**
+     * Gets the auto flush size property value.
+     */
+    public int getAutoFlushSize() {
+        return autoFlushSize;
+    }
+
+    /**
+     * Sets the auto flush delay property value. The default value is 0.
+     * If the value is positive, the output buffer is flushed at a newline
+     * only after the specified milliseconds have passed since the first
+     * character was written after the last flush, or after the auto
+     * flush size. Once the delay has passed, the output buffer is also
+     * flushed before the next characters are written, so the output
+     * without newlines is not kept in the buffer much longer than the
+     * delay.
+     * <p>
+     * If the auto flush size or delay is set, the output buffer is also
+     * flushed when the input object connected to this object has no
+     * characters to read without blocking.
+     *
+     * @param newDelay  the delay in milliseconds.
+     * @see #setAutoFlushSize(int)
+     */
+    public void setAutoFlushDelay(long newDelay) {
+        autoFlushDelay = newDelay;
+    }
+
+    /**
+     * Gets the auto flush delay property value.
+     */
+    public long getAutoFlushDelay() {
+        return autoFlushDelay;
+    }
+
+    /**
+     * Tests whether the output buffer is flushed at the newline in the
+     * auto flush mode.
+     */
+    private boolean isFlushDue() {
+        if (autoFlushSize <= 0 && autoFlushDelay <= 0) {
+            return true;
+        }
+        return (autoFlushSize > 0 && unflushedCount >= autoFlushSize) ||
+            (autoFlushDelay > 0 &&
+             System.currentTimeMillis() - unflushedTime >= autoFlushDelay);
+    }
+
+    /**
+     * Counts the characters written since the last flush. If the auto
+     * flush delay has passed, the output buffer is flushed before the
+     * characters are written.
+     *
+     * @param length  the number of characters.
+     * @exception  IOException  If an I/O error occurs
+     */
+    private void countUnflushed(int length) throws IOException {
+        if (autoFlushDelay > 0) {
+            long now = System.currentTimeMillis();
+            if (unflushedCount == 0) {
+                unflushedTime = now;
+            } else if (autoFlushMode &&
+                       now - unflushedTime >= autoFlushDelay) {
+                flushUnlocked();
+                unflushedTime = now;
+            }
+        }
+        unflushedCount += length;
+    }
+
+    /**
+     * Tests whether the output buffer is flushed when the input has no
+     * characters to read without blocking. It is true if the auto flush
+     * mode is true and the auto flush size or delay is set.
+     */
+    boolean isIdleFlushMode() {
+        return autoFlushMode && (autoFlushSize > 0 || autoFlushDelay > 0);
+    }
+
+    /**
+     * Flushes the output buffer because the input has no characters to
+     * read without blocking.
+     *
+     * @exception  IOException  If an I/O error occurs
+     * @see KanjiInput#setIdleOutput(KanjiOutput)
+     */
+    synchronized void inputIdle() throws IOException {
+        if (unflushedCount > 0) {
+            flushUnlocked();
+        }
+    }
+
+    /**
+     * Sets the HTML escape mode property value. The default value is false.
+     *
+     * @param newMode  if true '&amp;', '&lt;', '&gt;' and '&quot;' are
+     *                 written as HTML character entities.
+     */
+    public void setHtmlEscapeMode(boolean newMode) {
+        htmlEscapeMode = newMode;
+    }
+
+    /**
+     * Gets the HTML escape mode property value.
+     */
+    public boolean isHtmlEscapeMode() {
+        return htmlEscapeMode;
+    }
+
     /**
      * Sets the split mode property value. The default value is false.
      *
@@ -94,6 +229,14 @@ public class KanjiOutput extends Writer {
      * Puts the separator character if the split mode is true.
      */
     synchronized void putSeparator() {
+        putSeparatorUnlocked();
+    }
+
+    /**
+     * Puts the separator character if the split mode is true, without
+     * the lock.
+     */
+    final void putSeparatorUnlocked() {
         if (splitMode) {
             outSeparator = true;
         }
@@ -107,11 +250,22 @@ public class KanjiOutput extends Writer {
      * @param  len   Number of characters to write
      * @exception  IOException  If an I/O error occurs
      */
-    public void write(char cbuf[], int off, int len) throws IOException {
-        int max = off + len;
-        for (int index = off; index < max; index++) {
-            write(cbuf[index]);
-        }
+    public synchronized void write(char cbuf[], int off, int len)
+        throws IOException {
+        writeUnlocked(cbuf, off, len, htmlEscapeMode);
+    }
+
+    /**
+     * Write a portion of a string.
+     *
+     * @param  str  A String
+     * @param  off  Offset from which to start writing characters
+     * @param  len  Number of characters to write
+     * @exception  IOException  If an I/O error occurs
+     */
+    public synchronized void write(String str, int off, int len)
+        throws IOException {
+        writeUnlocked(str, off, len, htmlEscapeMode);
     }
 
     /**
@@ -121,10 +275,86 @@ public class KanjiOutput extends Writer {
      * @exception  IOException  If an I/O error occurs
      */
     public synchronized void write(int c) throws IOException {
+        writeUnlocked(c, htmlEscapeMode);
+    }
+
+    /**
+     * Writes the markup string. The markup is not escaped even if
+     * the HTML escape mode is true.
+     *
+     * @param markup  the markup string.
+     * @exception  IOException  If an I/O error occurs
+     */
+    synchronized void writeMarkup(String markup) throws IOException {
+        writeMarkupUnlocked(markup);
+    }
+
+    /**
+     * Writes the markup string without the lock.
+     *
+     * @param markup  the markup string.
+     * @exception  IOException  If an I/O error occurs
+     */
+    final void writeMarkupUnlocked(String markup) throws IOException {
+        writeUnlocked(markup, 0, markup.length(), false);
+    }
+
+    /**
+     * Writes the markup character. The character is not escaped even if
+     * the HTML escape mode is true.
+     *
+     * @param c  the markup character.
+     * @exception  IOException  If an I/O error occurs
+     */
+    synchronized void writeMarkup(int c) throws IOException {
+        writeUnlocked(c, false);
+    }
+
+    /**
+     * Writes the markup string to the specified writer.
+     * If the writer is a KanjiOutput object the markup is not escaped.
+     *
+     * @param output  the writer object.
+     * @param markup  the markup string.
+     * @exception  IOException  If an I/O error occurs
+     */
+    static void writeMarkup(Writer output, String markup) throws IOException {
+        if (output instanceof KanjiOutput) {
+            ((KanjiOutput)output).writeMarkup(markup);
+        } else {
+            output.write(markup);
+        }
+    }
+
+    /**
+     * Writes the markup character to the specified writer.
+     * If the writer is a KanjiOutput object the character is not escaped.
+     *
+     * @param output  the writer object.
+     * @param c  the markup character.
+     * @exception  IOException  If an I/O error occurs
+     */
+    static void writeMarkup(Writer output, int c) throws IOException {
+        if (output instanceof KanjiOutput) {
+            ((KanjiOutput)output).writeMarkup(c);
+        } else {
+            output.write(c);
+        }
+    }
+
+    /**
+     * Write a single character without the lock.
+     *
+     * @param c  int specifying a character to be written.
+     * @param escape  if true the HTML special characters are escaped.
+     * @exception  IOException  If an I/O error occurs
+     */
+    final void writeUnlocked(int c, boolean escape) throws IOException {
         if (writer == null) {
             setWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
         }
-        if (isSplitMode()) {
+        countUnflushed(1);
+        if (splitMode) {
             if (Character.isWhitespace((char)c)) {
                 lastWasSpace = true;
                 outSeparator = false;
@@ -138,9 +368,107 @@ public class KanjiOutput extends Writer {
                 lastWasSpace = false;
             }
         }
+        if (escape) {
+            switch (c) {
+            case '&':
+                writer.write("&amp;");
+                return;
+            case '<':
+                writer.write("&lt;");
+                return;
+            case '>':
+                writer.write("&gt;");
+                return;
+            case '"':
+                writer.write("&quot;");
+                return;
+            }
+        }
         writer.write(c);
-        if (c == '\n' && isAutoFlushMode()) {
-            flush();
+        if (c == '\n' && autoFlushMode && isFlushDue()) {
+            flushUnlocked();
+        }
+    }
+
+    /**
+     * Write a portion of a string without the lock. The characters are
+     * copied to the array and written by blocks.
+     *
+     * @param  str  A String
+     * @param  off  Offset from which to start writing characters
+     * @param  len  Number of characters to write
+     * @param escape  if true the HTML special characters are escaped.
+     * @exception  IOException  If an I/O error occurs
+     */
+    final void writeUnlocked(String str, int off, int len, boolean escape)
+        throws IOException {
+        if (len == 1) {
+            writeUnlocked(str.charAt(off), escape);
+            return;
+        }
+        if (stringBuffer == null) {
+            stringBuffer = new char[1024];
+        }
+        while (len > 0) {
+            int length = Math.min(len, stringBuffer.length);
+            str.getChars(off, off + length, stringBuffer, 0);
+            writeUnlocked(stringBuffer, 0, length, escape);
+            off += length;
+            len -= length;
+        }
+    }
+
+    /**
+     * Write a portion of an array of characters without the lock.
+     * The characters that need no handling are written to the writer
+     * together. A character is handled by writeUnlocked(int, boolean)
+     * when it is escaped, it is the newline to be flushed, or the
+     * separator is put before it.
+     *
+     * @param  cbuf  Array of characters
+     * @param  off   Offset from which to start writing characters
+     * @param  len   Number of characters to write
+     * @param escape  if true the HTML special characters are escaped.
+     * @exception  IOException  If an I/O error occurs
+     */
+    final void writeUnlocked(char cbuf[], int off, int len, boolean escape)
+        throws IOException {
+        if (writer == null) {
+            setWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+        }
+        int max = off + len;
+        int runStart = off;
+        for (int index = off; index < max; index++) {
+            char ch = cbuf[index];
+            if (outSeparator ||
+                (ch == '\n' && autoFlushMode) ||
+                (escape &&
+                 (ch == '&' || ch == '<' || ch == '>' || ch == '"'))) {
+                writeRun(cbuf, runStart, index);
+                writeUnlocked(ch, escape);
+                runStart = index + 1;
+            }
+        }
+        writeRun(cbuf, runStart, max);
+    }
+
+    /**
+     * Writes the characters that need no handling to the writer.
+     * In the split mode, only the last character changes the state.
+     *
+     * @param  cbuf  Array of characters
+     * @param  start  the index of the first character.
+     * @param  end  the index after the last character.
+     * @exception  IOException  If an I/O error occurs
+     */
+    private void writeRun(char cbuf[], int start, int end)
+        throws IOException {
+        if (start < end) {
+            countUnflushed(end - start);
+            writer.write(cbuf, start, end - start);
+            if (splitMode) {
+                lastWasSpace = Character.isWhitespace(cbuf[end - 1]);
+            }
         }
     }
 
@@ -150,6 +478,16 @@ public class KanjiOutput extends Writer {
      * @exception  IOException  If an I/O error occurs
      */
     public synchronized void flush() throws IOException {
+        flushUnlocked();
+    }
+
+    /**
+     * Flush the stream without the lock.
+     *
+     * @exception  IOException  If an I/O error occurs
+     */
+    final void flushUnlocked() throws IOException {
+        unflushedCount = 0;
         if (writer != null) {
             writer.flush();
         }
@@ -0,0 +1,157 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+/**
+ * An object of this class holds a word read by the tokenizer.
+ * The same object is reused for every word, so the values are only valid
+ * until the next call of {@link Kakasi#nextToken()}.
+ *
+ * @see Kakasi#nextToken()
+ */
+public class KanjiToken {
+
+    /** Type of the word that is not written in Japanese characters */
+    public static final String OTHER = "other";
+
+    private final StringBuffer text = new StringBuffer();
+    private final StringBuffer reading = new StringBuffer();
+    private final StringBuffer romaji = new StringBuffer();
+
+    private int start;
+    private int end;
+    private String type;
+
+    /**
+     * The constructor is not public.
+     */
+    KanjiToken() {
+    }
+
+    /**
+     * Clears the values for the next word.
+     */
+    void clear() {
+        text.setLength(0);
+        reading.setLength(0);
+        romaji.setLength(0);
+        start = 0;
+        end = 0;
+        type = null;
+    }
+
+    /**
+     * Sets the offsets of the word.
+     *
+     * @param start  the offset of the first character.
+     * @param end  the offset after the last character.
+     */
+    void setOffset(int start, int end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Sets the type of the word.
+     *
+     * @param type  the type of the word.
+     */
+    void setType(String type) {
+        this.type = type;
+    }
+
+    /**
+     * Gets the buffer that holds the source characters.
+     */
+    StringBuffer getTextBuffer() {
+        return text;
+    }
+
+    /**
+     * Gets the buffer that holds the reading.
+     */
+    StringBuffer getReadingBuffer() {
+        return reading;
+    }
+
+    /**
+     * Gets the buffer that holds the romaji.
+     */
+    StringBuffer getRomajiBuffer() {
+        return romaji;
+    }
+
+    /**
+     * Gets the offset of the first character of the word.
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Gets the offset after the last character of the word.
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * Gets the type of the word.
+     *
+     * @see Kakasi#KANJI
+     * @see Kakasi#HIRAGANA
+     * @see Kakasi#KATAKANA
+     * @see #OTHER
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Gets the source characters of the word.
+     */
+    public CharSequence getText() {
+        return text;
+    }
+
+    /**
+     * Gets the reading of the word in hiragana. The reading is empty if the
+     * token reading mode is false or the word has no reading.
+     *
+     * @see Kakasi#setTokenReadingMode(boolean)
+     */
+    public CharSequence getReading() {
+        return reading;
+    }
+
+    /**
+     * Gets the reading of the word in romaji. The romaji is empty if the
+     * token romaji mode is false or the word has no reading.
+     *
+     * @see Kakasi#setTokenRomajiMode(boolean)
+     */
+    public CharSequence getRomaji() {
+        return romaji;
+    }
+
+    /**
+     * Returns the source characters of the word.
+     */
+    public String toString() {
+        return text.toString();
+    }
+
+}
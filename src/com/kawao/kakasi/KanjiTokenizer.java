@@ -0,0 +1,194 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.io.Writer;
+import java.io.IOException;
+
+/**
+ * This class splits the input into words in the same way as the
+ * wakachigaki mode does. The reading of a word is written to a reused
+ * StringBuilder, and converted to romaji from there by the romaji
+ * table, so no pipe is used.
+ *
+ * @see Kakasi#nextToken()
+ */
+class KanjiTokenizer {
+
+    private final KanjiConverterImpl kanjiConverterImpl;
+    private final HiraganaConverterImpl hiraganaConverterImpl;
+    private final KatakanaConverterImpl katakanaConverterImpl;
+    private final KanaToRomaConverterImpl kanaToRomaConverterImpl;
+
+    private final KanjiToken token = new KanjiToken();
+    private final StringBuilder reading = new StringBuilder();
+    private final AppendableWriter readingWriter = new AppendableWriter();
+    private final Writer nullWriter = Writer.nullWriter();
+
+    private boolean readingMode;
+    private boolean romajiMode;
+
+    /**
+     * Constructs a KanjiTokenizer object.
+     *
+     * @param kanwaDictionary  the KanwaDictionary object.
+     * @param hiraganaConverterImpl  the hiragana converter.
+     * @param katakanaConverterImpl  the katakana converter.
+     * @param kanaToRomaConverterImpl  the romaji converter.
+     */
+    KanjiTokenizer(KanwaDictionary kanwaDictionary,
+                   HiraganaConverterImpl hiraganaConverterImpl,
+                   KatakanaConverterImpl katakanaConverterImpl,
+                   KanaToRomaConverterImpl kanaToRomaConverterImpl) {
+        kanjiConverterImpl = new KanjiConverterImpl(kanwaDictionary);
+        this.hiraganaConverterImpl = hiraganaConverterImpl;
+        this.katakanaConverterImpl = katakanaConverterImpl;
+        this.kanaToRomaConverterImpl = kanaToRomaConverterImpl;
+        readingWriter.setAppendable(reading);
+    }
+
+    /**
+     * Sets the lattice mode property of the kanji converter. The default
+     * value is false.
+     *
+     * @param newMode  if true, kanji words are chosen by the
+     *                 LatticeSegmenter as in the lattice mode of Kakasi.
+     */
+    void setLatticeMode(boolean newMode) {
+        kanjiConverterImpl.setLatticeMode(newMode);
+    }
+
+    /**
+     * Sets the reading mode property. The default value is false.
+     *
+     * @param newMode  if true, tokens hold the reading in hiragana.
+     */
+    void setReadingMode(boolean newMode) {
+        readingMode = newMode;
+    }
+
+    /**
+     * Gets the reading mode property value.
+     */
+    boolean isReadingMode() {
+        return readingMode;
+    }
+
+    /**
+     * Sets the romaji mode property. The default value is false.
+     *
+     * @param newMode  if true, tokens hold the reading in romaji.
+     */
+    void setRomajiMode(boolean newMode) {
+        romajiMode = newMode;
+    }
+
+    /**
+     * Gets the romaji mode property value.
+     */
+    boolean isRomajiMode() {
+        return romajiMode;
+    }
+
+    /**
+     * Reads the next word from the specified input object.
+     *
+     * @param input  the input object.
+     * @return  the token object, or null if the end of the stream has been
+     *           reached.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    KanjiToken next(KanjiInput input) throws IOException {
+        int ch;
+        while (true) {
+            ch = input.get();
+            if (ch < 0) {
+                return null;
+            }
+            if (!Character.isWhitespace((char)ch)) {
+                break;
+            }
+            input.consume(1);
+        }
+        token.clear();
+        reading.setLength(0);
+        int start = input.getSourcePosition();
+        boolean withReading = readingMode || romajiMode;
+        input.setCapture(token.getTextBuffer());
+        try {
+            Character.UnicodeBlock block = Character.UnicodeBlock.of((char)ch);
+            if (block.equals(Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS)) {
+                token.setType(Kakasi.KANJI);
+                if (!kanjiConverterImpl.toHiragana(input, readingWriter)) {
+                    input.consume(1);
+                }
+            } else if (block.equals(Character.UnicodeBlock.HIRAGANA)) {
+                token.setType(Kakasi.HIRAGANA);
+                hiraganaConverterImpl.toHiragana(
+                    input, withReading ? readingWriter : nullWriter);
+            } else if (block.equals(Character.UnicodeBlock.KATAKANA)) {
+                token.setType(Kakasi.KATAKANA);
+                if (withReading) {
+                    katakanaConverterImpl.toHiragana(input, readingWriter);
+                } else {
+                    katakanaConverterImpl.toKatakana(input, nullWriter);
+                }
+            } else {
+                token.setType(KanjiToken.OTHER);
+                readOther(input, ch);
+            }
+        } finally {
+            input.setCapture(null);
+        }
+        token.setOffset(start, input.getSourcePosition());
+        if (readingMode) {
+            token.getReadingBuffer().append(reading);
+        }
+        if (romajiMode) {
+            kanaToRomaConverterImpl.appendRomaji(reading,
+                                                 token.getRomajiBuffer());
+        }
+        return token;
+    }
+
+    /**
+     * Reads the word that is not written in Japanese characters.
+     * The word ends at a whitespace character, at a Japanese character,
+     * or where letters and digits change to symbols.
+     *
+     * @param input  the input object.
+     * @param ch  the first character.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private void readOther(KanjiInput input, int ch) throws IOException {
+        boolean letter = Character.isLetterOrDigit((char)ch);
+        while (true) {
+            input.consume(1);
+            ch = input.get();
+            if (ch < 0 || Character.isWhitespace((char)ch) ||
+                Character.isLetterOrDigit((char)ch) != letter) {
+                break;
+            }
+            Character.UnicodeBlock block = Character.UnicodeBlock.of((char)ch);
+            if (block.equals(Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS) ||
+                block.equals(Character.UnicodeBlock.HIRAGANA) ||
+                block.equals(Character.UnicodeBlock.KATAKANA)) {
+                break;
+            }
+        }
+    }
+
+}
@@ -117,6 +117,14 @@ class KanjiYomi implements Comparable {
         okuriganaTable.put(new Character('\u30f6'), "k");
     }
 
+    private static final String[] okuriganaArray = new String[0xc0];
+    static {
+        for (char ch = '\u3040'; ch < '\u3100'; ch++) {
+            okuriganaArray[ch - '\u3040'] =
+                (String)okuriganaTable.get(new Character(ch));
+        }
+    }
+
     private static final Object LOCK = new Object();
     private static long objectConter;
     private final long objectIndex;
@@ -197,6 +205,39 @@ class KanjiYomi implements Comparable {
         }
     }
 
+    /**
+     * Returns whether this object matches the specified characters.
+     * This method does the same check as getYomiFor without creating
+     * any object.
+     *
+     * @param chars  the characters to be checked.
+     * @param offset  the offset of the first character.
+     * @param end  the offset after the last character.
+     * @return  true if the characters match.
+     */
+    boolean matches(char[] chars, int offset, int end) {
+        if (offset + kanjiLength > end) {
+            return false;
+        }
+        for (int index = 0; index < kanjiLength; index++) {
+            if (chars[offset + index] != kanji.charAt(index)) {
+                return false;
+            }
+        }
+        if (okurigana == 0) {
+            return true;
+        }
+        if (offset + kanjiLength >= end) {
+            return false;
+        }
+        char ch = chars[offset + kanjiLength];
+        if (ch < '\u3040' || ch >= '\u3100') {
+            return false;
+        }
+        String okuriganaList = okuriganaArray[ch - '\u3040'];
+        return okuriganaList != null && okuriganaList.indexOf(okurigana) >= 0;
+    }
+
     /**
      * Compares two objects for equality.
      *
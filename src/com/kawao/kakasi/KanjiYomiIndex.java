@@ -0,0 +1,164 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * An object of this class holds the KanjiYomi objects of a kanji
+ * in the order of the dictionary, and grouped by the character that
+ * follows the kanji.
+ * The order of the objects in a group is the order of the dictionary.
+ * An object of this class is never changed after it is constructed.
+ *
+ * @see KanwaDictionary#lookupIndex(char)
+ */
+class KanjiYomiIndex {
+
+    private final KanjiYomi[] entries;
+    private final char[] nextChars;
+    private final int[] groupStart;
+    private final KanjiYomi[] grouped;
+    private final KanjiYomi[] singles;
+
+    /**
+     * Constructs a KanjiYomiIndex object.
+     *
+     * @param iterator  the iterator of KanjiYomi objects.
+     */
+    KanjiYomiIndex(Iterator iterator) {
+        int count = 0;
+        int singleCount = 0;
+        KanjiYomi[] all = new KanjiYomi[16];
+        while (iterator.hasNext()) {
+            KanjiYomi kanjiYomi = (KanjiYomi)iterator.next();
+            if (count == all.length) {
+                all = Arrays.copyOf(all, count * 2);
+            }
+            all[count++] = kanjiYomi;
+            if (kanjiYomi.getKanji().length() == 0) {
+                ++singleCount;
+            }
+        }
+
+        entries = Arrays.copyOf(all, count);
+
+        char[] keys = new char[count - singleCount];
+        int keyCount = 0;
+        for (int index = 0; index < count; index++) {
+            String kanji = all[index].getKanji();
+            if (kanji.length() > 0) {
+                keys[keyCount++] = kanji.charAt(0);
+            }
+        }
+        Arrays.sort(keys, 0, keyCount);
+        int uniqueCount = 0;
+        for (int index = 0; index < keyCount; index++) {
+            if (uniqueCount == 0 || keys[uniqueCount - 1] != keys[index]) {
+                keys[uniqueCount++] = keys[index];
+            }
+        }
+        nextChars = Arrays.copyOf(keys, uniqueCount);
+
+        groupStart = new int[uniqueCount + 1];
+        for (int index = 0; index < count; index++) {
+            String kanji = all[index].getKanji();
+            if (kanji.length() > 0) {
+                ++groupStart[Arrays.binarySearch(nextChars, kanji.charAt(0))
+                             + 1];
+            }
+        }
+        for (int index = 0; index < uniqueCount; index++) {
+            groupStart[index + 1] += groupStart[index];
+        }
+        int[] fill = Arrays.copyOf(groupStart, uniqueCount);
+        grouped = new KanjiYomi[keyCount];
+        singles = new KanjiYomi[singleCount];
+        singleCount = 0;
+        for (int index = 0; index < count; index++) {
+            String kanji = all[index].getKanji();
+            if (kanji.length() > 0) {
+                int group = Arrays.binarySearch(nextChars, kanji.charAt(0));
+                grouped[fill[group]++] = all[index];
+            } else {
+                singles[singleCount++] = all[index];
+            }
+        }
+    }
+
+    /**
+     * Gets the number of the objects.
+     */
+    int size() {
+        return entries.length;
+    }
+
+    /**
+     * Gets the object at the specified index in the order of the
+     * dictionary.
+     */
+    KanjiYomi get(int index) {
+        return entries[index];
+    }
+
+    /**
+     * Finds the group of the specified following character.
+     *
+     * @param next  the character that follows the kanji.
+     * @return  the group number, or -1 if there is no such group.
+     */
+    int findGroup(char next) {
+        int group = Arrays.binarySearch(nextChars, next);
+        return group < 0 ? -1 : group;
+    }
+
+    /**
+     * Gets the index of the first object of the specified group.
+     */
+    int getGroupStart(int group) {
+        return groupStart[group];
+    }
+
+    /**
+     * Gets the index after the last object of the specified group.
+     */
+    int getGroupEnd(int group) {
+        return groupStart[group + 1];
+    }
+
+    /**
+     * Gets the object at the specified index of the groups.
+     */
+    KanjiYomi getGrouped(int index) {
+        return grouped[index];
+    }
+
+    /**
+     * Gets the number of the objects that consist of the kanji only.
+     */
+    int getSingleCount() {
+        return singles.length;
+    }
+
+    /**
+     * Gets the object that consists of the kanji only.
+     */
+    KanjiYomi getSingle(int index) {
+        return singles[index];
+    }
+
+}
@@ -21,7 +21,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.FileInputStream;
 import java.io.Reader;
-import java.io.InputStreamReader;
 import java.io.BufferedReader;
 import java.io.RandomAccessFile;
 import java.util.Map;
@@ -41,6 +40,7 @@ import java.util.TreeSet;
 public class KanwaDictionary {
 
     private final Map contentsTable = new HashMap(8192);
+    private final KanjiYomiIndex[] indexTable = new KanjiYomiIndex[0x10000];
 
     private Map entryTable;
     private Set loadedKyes;
@@ -49,7 +49,8 @@ public class KanwaDictionary {
 
     /**
      * Reads and adds dictionary entries from the file.
-     * The file encoding is "JISAutoDetect".
+     * The file encoding is "JISAutoDetect", which is detected from the
+     * head of the file.
      * 
      * @param filename  the file name.
      * @exception  IOException  if an error occurred when opening or reading
@@ -71,7 +72,7 @@ public class KanwaDictionary {
     public void load(String filename, String encoding) throws IOException {
         InputStream in = new FileInputStream(filename);
         try {
-            Reader reader = new InputStreamReader(in, encoding);
+            Reader reader = AutoDetectReader.createReader(in, encoding);
             try {
                 load(reader);
             } finally {
@@ -242,6 +243,7 @@ public class KanwaDictionary {
         yomi = yomiBuffer.toString();   
 
         KanjiYomi kanjiYomi = new KanjiYomi(kanji, yomi, okurigana);
+        indexTable[key.charValue()] = null;
         Set list = (Set)contentsTable.get(key);
         if (list == null) {
             list = new TreeSet();
@@ -285,6 +287,28 @@ public class KanwaDictionary {
         return list.iterator();
     }
 
+    /**
+     * Looks up the specified character, and returns the KanjiYomi objects
+     * grouped by the following character. Once created, the index is
+     * returned without locking; its fields are final, so it is safely
+     * published.
+     *
+     * @param k  the character to look up.
+     * @return  the KanjiYomiIndex object.
+     * @exception  IOException  if an error occurred when reading kanwa
+     *               dictionary file.
+     */
+    KanjiYomiIndex lookupIndex(char k) throws IOException {
+        KanjiYomiIndex index = indexTable[k];
+        if (index == null) {
+            synchronized (this) {
+                index = new KanjiYomiIndex(lookup(k));
+                indexTable[k] = index;
+            }
+        }
+        return index;
+    }
+
     /**
      * Initializes this object.
      *
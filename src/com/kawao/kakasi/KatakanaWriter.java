@@ -0,0 +1,75 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.io.IOException;
+
+/**
+ * A KanaWriter class that converts Hiragana to Katakana in the same way
+ * as the HiraganaConverterImpl does. Only 'u' is kept until the next
+ * character, because it becomes 'vu' with the voice sound mark.
+ *
+ * @see HiraganaConverterImpl#toKatakana(KanjiInput, java.io.Writer)
+ */
+class KatakanaWriter extends KanaWriter {
+
+    private boolean pendingU;
+
+    /**
+     * Writes the character that is kept for the following characters,
+     * and ends the conversion of the word.
+     *
+     * @exception  IOException  if an I/O error occurred.
+     */
+    void finish() throws IOException {
+        if (pendingU) {
+            pendingU = false;
+            output.write('\u30a6');
+        }
+    }
+
+    /**
+     * Write a single character.
+     *
+     * @param c  int specifying a character to be written.
+     * @exception  IOException  If an I/O error occurs
+     */
+    public void write(int c) throws IOException {
+        char ch = (char)c;
+        if (pendingU) {
+            pendingU = false;
+            if (ch == '\u309b') {	// voice sound mark
+                output.write('\u30f4');	// 'vu'
+                return;
+            }
+            output.write('\u30a6');
+        }
+        if (ch == '\u3046') {	// 'u'
+            pendingU = true;
+        } else if ((ch >= '\u3041' && ch <= '\u3093') ||
+                   ch == '\u309d' || ch == '\u309e') {
+            // from small 'a' to 'n' and iteration marks
+            output.write(ch + 0x60);
+        } else if (ch == '\u30fc' ||	// prolonged sound mark
+                   Character.UnicodeBlock.of(ch).equals(
+                       Character.UnicodeBlock.HIRAGANA)) {
+            output.write(ch);
+        } else {
+            KanjiOutput.writeMarkup(output, ch);
+        }
+    }
+
+}
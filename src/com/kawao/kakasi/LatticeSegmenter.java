@@ -0,0 +1,249 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.io.IOException;
+
+/**
+ * This class splits a run of characters into Kanji words.
+ * All dictionary matches in the run are collected in one pass, and the
+ * words are chosen so that the cost to cover the whole run is the lowest.
+ * A word costs more than a character left to the other converters, and
+ * a kanji not found in the dictionary costs more than a word.
+ * When two choices cost the same, the longer word comes first as
+ * the greedy longest match does.
+ * <p>
+ * The result for a run is kept, so the following words of the run are
+ * returned without reading the input again. The result is not kept in
+ * the space eat mode, because the whitespace characters skipped in the
+ * run are consumed later.
+ *
+ * @see KanjiConverterImpl#setLatticeMode(boolean)
+ */
+class LatticeSegmenter {
+
+    /** The maximum number of characters in a run */
+    static final int MAX_LENGTH = 64;
+
+    /** Words near the end of a cut run are looked up again */
+    private static final int MARGIN = 16;
+
+    /** The cost of a character that is not a kanji */
+    private static final int CHAR_COST = 1;
+
+    /** The cost of a word found in the dictionary */
+    private static final int WORD_COST = 2;
+
+    /** The cost of a kanji not found in the dictionary */
+    private static final int UNKNOWN_COST = 8;
+
+    private final ItaijiDictionary itaijiDictionary =
+        ItaijiDictionary.getInstance();
+    private final KanwaDictionary kanwaDictionary;
+
+    private final char[] chars = new char[MAX_LENGTH];
+    private final char[] more = new char[MAX_LENGTH - 1];
+    private final int[] cost = new int[MAX_LENGTH + 1];
+    private final int[] wordLength = new int[MAX_LENGTH];
+    private final KanjiYomi[] wordYomi = new KanjiYomi[MAX_LENGTH];
+    private final int[] edgeStart = new int[MAX_LENGTH + 1];
+    private final int[] edgeEnd = new int[MAX_LENGTH * MAX_LENGTH];
+    private final KanjiYomi[] edgeYomi =
+        new KanjiYomi[MAX_LENGTH * MAX_LENGTH];
+    private int length;
+    private int limit;
+
+    private KanjiInput runInput;
+    private int runGeneration;
+    private int runPosition;
+    private int offset;
+
+    /**
+     * Constructs a LatticeSegmenter object.
+     *
+     * @param kanwaDictionary  the KanwaDictionary object.
+     */
+    LatticeSegmenter(KanwaDictionary kanwaDictionary) {
+        this.kanwaDictionary = kanwaDictionary;
+    }
+
+    /**
+     * Finds the word that starts at the current input character.
+     * The input is not consumed.
+     *
+     * @param input  the input object.
+     * @return  the length of the word excluding the first character,
+     *           or -1 if the first character is not found in the dictionary.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    int next(KanjiInput input) throws IOException {
+        int position = input.getPosition();
+        if (input != runInput || input.getGeneration() != runGeneration ||
+            position < runPosition || position - runPosition >= limit ||
+            input.isSpaceEatMode()) {
+            build(input);
+            runInput = input;
+            runGeneration = input.getGeneration();
+            runPosition = position;
+        }
+        offset = position - runPosition;
+        return wordLength[offset];
+    }
+
+    /**
+     * Gets the first character of the word found by the last call of next.
+     */
+    char getKey() {
+        return chars[offset];
+    }
+
+    /**
+     * Gets the dictionary entry of the word found by the last call of next.
+     */
+    KanjiYomi getKanjiYomi() {
+        return wordYomi[offset];
+    }
+
+    /**
+     * Gets the characters following the first character of the word
+     * found by the last call of next.
+     *
+     * @param maxLength  the maximum length of the result.
+     */
+    String getRest(int maxLength) {
+        int restLength = Math.min(maxLength, length - offset - 1);
+        return new String(chars, offset + 1, restLength);
+    }
+
+    /**
+     * Builds the lattice for the run that starts at the current input
+     * character, and chooses the best words from the end of the run.
+     * The run ends at the first character that is not a kanji and is
+     * not covered by any word found so far.
+     *
+     * @param input  the input object.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private void build(KanjiInput input) throws IOException {
+        chars[0] = itaijiDictionary.get((char)input.get());
+        int moreLength = input.more(more);
+        for (int index = 0; index < moreLength; index++) {
+            chars[index + 1] = itaijiDictionary.get(more[index]);
+        }
+        int available = moreLength + 1;
+
+        int reach = 1;
+        int edgeCount = 0;
+        int start = 0;
+        for (; start < reach || (start < available && isKanji(start));
+             start++) {
+            edgeStart[start] = edgeCount;
+            if (!isKanji(start)) {
+                continue;
+            }
+            int firstEdge = edgeCount;
+            KanjiYomiIndex index = kanwaDictionary.lookupIndex(chars[start]);
+            int group = start + 1 < available ?
+                index.findGroup(chars[start + 1]) : -1;
+            if (group >= 0) {
+                int groupEnd = index.getGroupEnd(group);
+                for (int at = index.getGroupStart(group); at < groupEnd;
+                     at++) {
+                    edgeCount = addEdge(index.getGrouped(at), start,
+                                        available, firstEdge, edgeCount);
+                }
+            }
+            int singleCount = index.getSingleCount();
+            for (int at = 0; at < singleCount; at++) {
+                edgeCount = addEdge(index.getSingle(at), start, available,
+                                    firstEdge, edgeCount);
+            }
+            for (int at = firstEdge; at < edgeCount; at++) {
+                reach = Math.max(reach, edgeEnd[at]);
+            }
+            reach = Math.max(reach, start + 1);
+        }
+        length = start;
+        limit = available == MAX_LENGTH ?
+            Math.min(length, available - MARGIN) : length;
+        edgeStart[length] = edgeCount;
+
+        cost[length] = 0;
+        for (start = length - 1; start >= 0; start--) {
+            wordLength[start] = -1;
+            wordYomi[start] = null;
+            if (!isKanji(start)) {
+                cost[start] = CHAR_COST + cost[start + 1];
+                continue;
+            }
+            int bestCost = UNKNOWN_COST + cost[start + 1];
+            for (int index = edgeStart[start]; index < edgeStart[start + 1];
+                 index++) {
+                int wordCost = WORD_COST + cost[edgeEnd[index]];
+                if (wordCost < bestCost) {
+                    bestCost = wordCost;
+                    wordYomi[start] = edgeYomi[index];
+                    wordLength[start] = edgeYomi[index].getLength();
+                }
+            }
+            cost[start] = bestCost;
+        }
+    }
+
+    /**
+     * Adds the edge of the specified word if the word matches the
+     * characters. Only the first word is kept for each end of the edges
+     * that start at the same character.
+     *
+     * @param kanjiYomi  the word.
+     * @param start  the index of the first character of the word.
+     * @param available  the number of the characters.
+     * @param firstEdge  the first edge that starts at the same character.
+     * @param edgeCount  the number of the edges.
+     * @return  the new number of the edges.
+     */
+    private int addEdge(KanjiYomi kanjiYomi, int start, int available,
+                        int firstEdge, int edgeCount) {
+        int wordEnd = start + 1 + kanjiYomi.getLength();
+        if (wordEnd > available ||
+            !kanjiYomi.matches(chars, start + 1, available)) {
+            return edgeCount;
+        }
+        if (wordEnd > start + 1 && wordEnd < available &&
+            chars[wordEnd - 1] == '\u3063' &&
+            Character.UnicodeBlock.of(chars[wordEnd]).equals(
+                Character.UnicodeBlock.HIRAGANA)) {
+            ++wordEnd;
+        }
+        for (int index = firstEdge; index < edgeCount; index++) {
+            if (edgeEnd[index] == wordEnd) {
+                return edgeCount;
+            }
+        }
+        edgeEnd[edgeCount] = wordEnd;
+        edgeYomi[edgeCount] = kanjiYomi;
+        return edgeCount + 1;
+    }
+
+    /**
+     * Returns whether the character at the specified index is a kanji.
+     */
+    private boolean isKanji(int index) {
+        Character.UnicodeBlock block = Character.UnicodeBlock.of(chars[index]);
+        return block.equals(Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS);
+    }
+
+}
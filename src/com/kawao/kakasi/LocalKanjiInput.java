@@ -0,0 +1,60 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.io.IOException;
+
+/**
+ * A KanjiInput class that is used by only one thread. The methods used
+ * in the conversion have no locks.
+ *
+ * @see LocalKanjiOutput
+ */
+final class LocalKanjiInput extends KanjiInput {
+
+    int getPosition() {
+        return getPositionUnlocked();
+    }
+
+    int getSourcePosition() {
+        return getSourcePositionUnlocked();
+    }
+
+    boolean isBuffered() {
+        return isBufferedUnlocked();
+    }
+
+    int get() throws IOException {
+        return getUnlocked();
+    }
+
+    int more() throws IOException {
+        return moreUnlocked();
+    }
+
+    int more(char[] chars) throws IOException {
+        return moreUnlocked(chars);
+    }
+
+    void consume(int length) {
+        consumeUnlocked(length);
+    }
+
+    void append(char[] chars, int offset, int length) {
+        appendUnlocked(chars, offset, length);
+    }
+
+}
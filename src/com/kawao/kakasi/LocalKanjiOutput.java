@@ -0,0 +1,83 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.io.IOException;
+
+/**
+ * A KanjiOutput class that is used by only one thread. The methods used
+ * in the conversion have no locks.
+ *
+ * @see LocalKanjiInput
+ */
+final class LocalKanjiOutput extends KanjiOutput {
+
+    void putSeparator() {
+        putSeparatorUnlocked();
+    }
+
+    /**
+     * Write a single character.
+     *
+     * @param c  int specifying a character to be written.
+     * @exception  IOException  If an I/O error occurs
+     */
+    public void write(int c) throws IOException {
+        writeUnlocked(c, isHtmlEscapeMode());
+    }
+
+    /**
+     * Write a portion of an array of characters.
+     *
+     * @param cbuf  Array of characters
+     * @param off  Offset from which to start writing characters
+     * @param len  Number of characters to write
+     * @exception  IOException  If an I/O error occurs
+     */
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        writeUnlocked(cbuf, off, len, isHtmlEscapeMode());
+    }
+
+    /**
+     * Write a portion of a string.
+     *
+     * @param str  A String
+     * @param off  Offset from which to start writing characters
+     * @param len  Number of characters to write
+     * @exception  IOException  If an I/O error occurs
+     */
+    public void write(String str, int off, int len) throws IOException {
+        writeUnlocked(str, off, len, isHtmlEscapeMode());
+    }
+
+    void writeMarkup(String markup) throws IOException {
+        writeMarkupUnlocked(markup);
+    }
+
+    void writeMarkup(int c) throws IOException {
+        writeUnlocked(c, false);
+    }
+
+    /**
+     * Flush the stream.
+     *
+     * @exception  IOException  If an I/O error occurs
+     */
+    public void flush() throws IOException {
+        flushUnlocked();
+    }
+
+}
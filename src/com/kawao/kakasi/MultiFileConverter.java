@@ -0,0 +1,301 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class converts many files on a pool of threads. Each thread
+ * converts the files with its own session of the engine, which shares
+ * the kanwa dictionary.
+ * <p>
+ * The results are written either to a file of the same name in the
+ * destination directory, or to one stream in the order of the files.
+ * In the latter case at most two results for each thread are kept in
+ * memory at a time.
+ *
+ * @see Kakasi#main(String[])
+ */
+class MultiFileConverter {
+
+    private final KakasiEngine engine;
+    private final String inputEncoding;
+    private final Charset outputCharset;
+    private final int threadCount;
+
+    private final ThreadLocal workers = new ThreadLocal() {
+            protected Object initialValue() {
+                return new Worker();
+            }
+        };
+
+    /**
+     * Constructs a MultiFileConverter object.
+     *
+     * @param engine  the engine that converts the files.
+     * @param inputEncoding  the encoding of the source files, or null for
+     *                       the default encoding. If it asks the
+     *                       detection, the encoding of each file is
+     *                       detected.
+     * @param outputCharset  the character set of the results.
+     * @param threadCount  the number of threads.
+     */
+    MultiFileConverter(KakasiEngine engine, String inputEncoding,
+                       Charset outputCharset, int threadCount) {
+        this.engine = engine;
+        this.inputEncoding = inputEncoding;
+        this.outputCharset = outputCharset;
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Expands the specified name to the list of files. A directory is
+     * expanded to the files in it, and a name whose last part has the
+     * glob characters "*?[{" is expanded to the matching files. The files
+     * are sorted by their names.
+     *
+     * @param name  the file name, the directory name, or the pattern.
+     * @return  the list of File objects.
+     * @exception  IOException  if no file is found.
+     */
+    static List expand(String name) throws IOException {
+        List files = new ArrayList();
+        File file = new File(name);
+        String glob = null;
+        if (!file.exists() && hasGlob(file.getName())) {
+            glob = file.getName();
+            file = file.getParentFile() == null ?
+                new File(".") : file.getParentFile();
+        }
+        if (file.isDirectory()) {
+            DirectoryStream stream = glob == null ?
+                Files.newDirectoryStream(file.toPath()) :
+                Files.newDirectoryStream(file.toPath(), glob);
+            try {
+                Iterator iterator = stream.iterator();
+                while (iterator.hasNext()) {
+                    Path path = (Path)iterator.next();
+                    if (Files.isRegularFile(path)) {
+                        files.add(path.toFile());
+                    }
+                }
+            } finally {
+                stream.close();
+            }
+            Collections.sort(files);
+        } else if (file.isFile()) {
+            files.add(file);
+        }
+        if (files.isEmpty()) {
+            throw new IOException(name + ": No such file");
+        }
+        return files;
+    }
+
+    /**
+     * Tests whether the name has the glob characters.
+     */
+    private static boolean hasGlob(String name) {
+        for (int index = 0; index < name.length(); index++) {
+            if ("*?[{".indexOf(name.charAt(index)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Converts the files, and writes each result to the file of the same
+     * name in the destination directory. No file is converted if two
+     * source files have the same name.
+     *
+     * @param files  the list of the source files.
+     * @param directory  the destination directory.
+     * @return  the number of bytes read from the source files.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    long convert(List files, final File directory) throws IOException {
+        if (!directory.isDirectory()) {
+            throw new IOException(directory + ": Not a directory");
+        }
+        List tasks = new ArrayList();
+        Map sources = new HashMap();
+        for (Iterator iterator = files.iterator(); iterator.hasNext();) {
+            final File source = (File)iterator.next();
+            final File destination = new File(directory, source.getName());
+            File canonical = destination.getCanonicalFile();
+            if (canonical.equals(source.getCanonicalFile())) {
+                throw new IOException(
+                    destination + ": Destination is the source file");
+            }
+            File other = (File)sources.put(canonical, source);
+            if (other != null) {
+                throw new IOException(
+                    destination + ": Destination of both " + other +
+                    " and " + source);
+            }
+            tasks.add(new Callable() {
+                    public Object call() throws IOException {
+                        return Long.valueOf(getFileConverter(source)
+                                        .convert(source, destination));
+                    }
+                });
+        }
+        long byteCount = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List results = new ArrayList();
+            Iterator iterator = tasks.iterator();
+            while (iterator.hasNext()) {
+                results.add(executor.submit((Callable)iterator.next()));
+            }
+            iterator = results.iterator();
+            while (iterator.hasNext()) {
+                Future result = (Future)iterator.next();
+                byteCount += ((Long)Kakasi.getResult(result)).longValue();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return byteCount;
+    }
+
+    /**
+     * Converts the files, and writes the results to the stream in the
+     * order of the files. The stream is not closed.
+     *
+     * @param files  the list of the source files.
+     * @param out  the destination stream.
+     * @return  the number of bytes read from the source files.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    long convert(List files, OutputStream out) throws IOException {
+        long byteCount = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            LinkedList results = new LinkedList();
+            for (Iterator iterator = files.iterator(); iterator.hasNext();) {
+                final File source = (File)iterator.next();
+                results.add(executor.submit(new Callable() {
+                        public Object call() throws IOException {
+                            Result result = new Result();
+                            result.byteCount = getFileConverter(source)
+                                .convert(source,
+                                         Channels.newChannel(result.bytes));
+                            return result;
+                        }
+                    }));
+                if (results.size() >= threadCount * 2) {
+                    byteCount += write(out, (Future)results.removeFirst());
+                }
+            }
+            while (!results.isEmpty()) {
+                byteCount += write(out, (Future)results.removeFirst());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        out.flush();
+        return byteCount;
+    }
+
+    /**
+     * Writes the result of the file to the stream.
+     *
+     * @param out  the destination stream.
+     * @param future  the result of the task.
+     * @return  the number of bytes read from the source file.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private static long write(OutputStream out, Future future)
+        throws IOException {
+        Result result = (Result)Kakasi.getResult(future);
+        result.bytes.writeTo(out);
+        return result.byteCount;
+    }
+
+    /**
+     * Gets the file converter of the current thread for the source file.
+     *
+     * @param source  the source file.
+     * @return  the FileConverter object.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private FileConverter getFileConverter(File source) throws IOException {
+        String encoding = inputEncoding;
+        if (encoding != null && AutoDetectReader.isAutoDetect(encoding)) {
+            encoding = AutoDetectReader.detect(source);
+        }
+        return ((Worker)workers.get()).getFileConverter(encoding);
+    }
+
+    /**
+     * The result of a file.
+     */
+    private static class Result {
+        long byteCount;
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    }
+
+    /**
+     * The objects used by a thread.
+     */
+    private class Worker {
+
+        private final KakasiSession session = engine.getSession();
+        private final Map fileConverters = new HashMap();
+
+        /**
+         * Gets the file converter for the specified input encoding.
+         *
+         * @param encoding  the input encoding, or null for the default
+         *                  encoding.
+         */
+        FileConverter getFileConverter(String encoding) {
+            FileConverter converter =
+                (FileConverter)fileConverters.get(encoding);
+            if (converter == null) {
+                Charset inputCharset = encoding == null ?
+                    Charset.defaultCharset() : Charset.forName(encoding);
+                converter = new FileConverter(session, inputCharset,
+                                              outputCharset);
+                fileConverters.put(encoding, converter);
+            }
+            return converter;
+        }
+
+    }
+
+}
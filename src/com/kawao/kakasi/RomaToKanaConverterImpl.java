@@ -0,0 +1,287 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.io.Writer;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class implements conversion methods that converts a Romaji word
+ * to Hiragana/Katakana.
+ * <p>
+ * The Romaji to Kana tables are made by reversing the Kana to Romaji
+ * tables of the current romanization system, Hepburn and Kunrei, so both
+ * "shi" and "si" are read. When some Kana strings have the same romaji,
+ * the one with the fewest small or old Kana is used.
+ * Upper case letters are read as lower case letters.
+ * <p>
+ * A doubled consonant and "tch" are read as the sokuon when the second
+ * consonant starts a romaji of the table, like "kka" and "tchi", but
+ * not "ll" of "hello". 'n' is read as
+ * the syllabic n when it is not followed by a vowel or 'y'; "nn" and
+ * "n'" are read as one syllabic n unless "nn" is followed by a vowel or
+ * 'y', and 'm' before 'b', 'm' or 'p' is read as the syllabic n.
+ * The characters that are not Romaji are written as they are.
+ *
+ * @see Kakasi#setupAsciiConverter(String)
+ */
+class RomaToKanaConverterImpl {
+
+    /** The Kana that are not used when other Kana have the same romaji */
+    private static final String DISPREFERRED =
+        "\u3041\u3043\u3045\u3047\u3049\u3063\u3083\u3085\u3087\u308e" +
+        "\u3095\u3096\u3090\u3091\u3062\u3065\u309b" +
+        "\u30a1\u30a3\u30a5\u30a7\u30a9\u30c3\u30e3\u30e5\u30e7\u30ee" +
+        "\u30f5\u30f6\u30f0\u30f1\u30c2\u30c5";
+
+    private static final char HIRAGANA_SOKUON = '\u3063';
+    private static final char HIRAGANA_N = '\u3093';
+    private static final char KATAKANA_SOKUON = '\u30c3';
+    private static final char KATAKANA_N = '\u30f3';
+
+    private static final Map tables = new HashMap();
+
+    private final KanaToRomaConverterImpl kanaToRomaConverterImpl;
+
+    /**
+     * Constructs a RomaToKanaConverterImpl object.
+     *
+     * @param kanaToRomaConverterImpl  the converter that holds the
+     *                                 romanization system.
+     */
+    RomaToKanaConverterImpl(KanaToRomaConverterImpl kanaToRomaConverterImpl) {
+        this.kanaToRomaConverterImpl = kanaToRomaConverterImpl;
+    }
+
+    /**
+     * Converts the Romaji word into the Hiragana word.
+     *
+     * @param input  the input object.
+     * @param output  the output writer object.
+     * @return  false if the input does not start with an ASCII character,
+     *           otherwise true.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    boolean toHiragana(KanjiInput input, Writer output) throws IOException {
+        RomajiSystem system = kanaToRomaConverterImpl.getSystem();
+        return convert(input, output, getTable(system, false),
+                       HIRAGANA_SOKUON, HIRAGANA_N);
+    }
+
+    /**
+     * Converts the Romaji word into the Katakana word.
+     *
+     * @param input  the input object.
+     * @param output  the output writer object.
+     * @return  false if the input does not start with an ASCII character,
+     *           otherwise true.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    boolean toKatakana(KanjiInput input, Writer output) throws IOException {
+        RomajiSystem system = kanaToRomaConverterImpl.getSystem();
+        return convert(input, output, getTable(system, true),
+                       KATAKANA_SOKUON, KATAKANA_N);
+    }
+
+    /**
+     * Converts the ASCII characters to Kana.
+     *
+     * @param input  the input object.
+     * @param output  the output writer object.
+     * @param table  the Romaji to Kana table.
+     * @param sokuon  the sokuon character.
+     * @param n  the syllabic n character.
+     * @return  false if the input does not start with an ASCII character,
+     *           otherwise true.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private static boolean convert(KanjiInput input, Writer output,
+                                   RomajiTable table, char sokuon, char n)
+        throws IOException {
+        int ch = input.get();
+        if (ch < 0 || ch >= 0x80) {
+            return false;
+        }
+        do {
+            int lower = RomajiTable.toLowerCase(ch);
+            int next = lower >= 'a' && lower <= 'z' ?
+                RomajiTable.toLowerCase(input.more()) : -1;
+            if (next < 0) {
+                readTable(input, output, table, ch);
+            } else if (lower == 'n' && next == '\'') {
+                output.write(n);
+                input.consume(2);
+            } else if (lower == 'n' && next == 'n') {
+                int third = RomajiTable.toLowerCase(input.more());
+                output.write(n);
+                input.consume(isVowel(third) || third == 'y' ? 1 : 2);
+            } else if (lower == 'm' &&
+                       (next == 'b' || next == 'm' || next == 'p')) {
+                output.write(n);
+                input.consume(1);
+            } else if ((next == lower || (lower == 't' && next == 'c')) &&
+                       lower != 'n' && !isVowel(lower) &&
+                       startsRomaji(input, table, next)) {
+                output.write(sokuon);
+                input.consume(1);
+            } else {
+                readTable(input, output, table, ch);
+            }
+            ch = input.get();
+        } while (ch >= 0 && ch < 0x80);
+        return true;
+    }
+
+    /**
+     * Converts the longest romaji in the table, or writes the character
+     * as it is if the input does not start with any romaji in the table.
+     *
+     * @param input  the input object.
+     * @param output  the output writer object.
+     * @param table  the Romaji to Kana table.
+     * @param ch  the current input character.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private static void readTable(KanjiInput input, Writer output,
+                                  RomajiTable table, int ch)
+        throws IOException {
+        int index = table.read(input, true);
+        if (index >= 0) {
+            output.write(table.getRomaji(index));
+        } else {
+            output.write((char)ch);
+            input.consume(1);
+        }
+    }
+
+    /**
+     * Returns whether a romaji of the table starts with the specified
+     * character, which was read by KanjiInput.more(). The following
+     * characters are read by KanjiInput.more() but not consumed.
+     *
+     * @param input  the input object.
+     * @param table  the Romaji to Kana table.
+     * @param ch  the lower case character.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private static boolean startsRomaji(KanjiInput input, RomajiTable table,
+                                        int ch)
+        throws IOException {
+        int state = table.next(RomajiTable.START, ch);
+        while (state != RomajiTable.NONE) {
+            if (table.getOutput(state) >= 0) {
+                return true;
+            }
+            if (!table.hasTransitions(state)) {
+                break;
+            }
+            ch = input.more();
+            if (ch < 0) {
+                break;
+            }
+            state = table.next(state, RomajiTable.toLowerCase(ch));
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the specified character is a lower case vowel.
+     */
+    private static boolean isVowel(int ch) {
+        return ch == 'a' || ch == 'i' || ch == 'u' || ch == 'e' || ch == 'o';
+    }
+
+    /**
+     * Gets the Romaji to Kana table of the specified romanization system.
+     * The table is made once for each system.
+     *
+     * @param system  the romanization system.
+     * @param katakana  if true, the Katakana table is returned.
+     */
+    static RomajiTable getTable(RomajiSystem system, boolean katakana) {
+        String key =
+            system.getName() + (katakana ? "/katakana" : "/hiragana");
+        synchronized (tables) {
+            RomajiTable table = (RomajiTable)tables.get(key);
+            if (table == null) {
+                table = createTable(system, katakana);
+                tables.put(key, table);
+            }
+            return table;
+        }
+    }
+
+    /**
+     * Makes the Romaji to Kana table by reversing the Kana to Romaji
+     * tables of the specified system, Hepburn and Kunrei.
+     *
+     * @param system  the romanization system.
+     * @param katakana  if true, the Katakana table is made.
+     */
+    private static RomajiTable createTable(RomajiSystem system,
+                                           boolean katakana) {
+        RomajiSystem[] systems = {
+            system,
+            RomajiSystem.forName(RomajiSystem.HEPBURN),
+            RomajiSystem.forName(RomajiSystem.KUNREI),
+        };
+        Map best = new HashMap();
+        for (int index = 0; index < systems.length; index++) {
+            Map entries = new TreeMap();
+            if (katakana) {
+                systems[index].getKatakanaTable().collect(entries);
+            } else {
+                systems[index].getHiraganaTable().collect(entries);
+            }
+            Iterator iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry entry = (Map.Entry)iterator.next();
+                String kana = (String)entry.getKey();
+                String romaji = (String)entry.getValue();
+                String current = (String)best.get(romaji);
+                if (current == null ||
+                    countDispreferred(kana) < countDispreferred(current)) {
+                    best.put(romaji, kana);
+                }
+            }
+        }
+        RomajiTable.Builder builder = new RomajiTable.Builder('\0', 0x80);
+        Iterator iterator = best.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry entry = (Map.Entry)iterator.next();
+            builder.add((String)entry.getKey(), (String)entry.getValue());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Counts the small or old Kana in the specified string.
+     */
+    private static int countDispreferred(String kana) {
+        int count = 0;
+        for (int index = 0; index < kana.length(); index++) {
+            if (DISPREFERRED.indexOf(kana.charAt(index)) >= 0) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+}
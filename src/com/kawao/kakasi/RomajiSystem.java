@@ -0,0 +1,256 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+/**
+ * An object of this class holds the Hiragana and Katakana conversion
+ * tables of a romanization system.
+ * <p>
+ * A romanization system is described by a file in the dict/romaji
+ * directory, and compiled into the resources of the jar when the jar is
+ * built. The file has a "[hiragana]" section and a "[katakana]" section,
+ * and each line of a section has a Kana string and its romaji.
+ * Lines starting with '#' are comments. The file is read in EUC-JP.
+ * <p>
+ * An object of this class is immutable.
+ *
+ * @see KanaToRomaConverterImpl
+ */
+class RomajiSystem {
+
+    /** The name of the Hepburn romanization system */
+    static final String HEPBURN = "hepburn";
+
+    /** The name of the Kunrei romanization system */
+    static final String KUNREI = "kunrei";
+
+    /** The encoding of the romanization system files */
+    private static final String ENCODING = "EUC-JP";
+
+    private static final Map systems = new HashMap();
+
+    private final String name;
+    private final RomajiTable hiraganaTable;
+    private final RomajiTable katakanaTable;
+
+    /**
+     * Constructs a RomajiSystem object.
+     *
+     * @param name  the name of the system.
+     * @param hiraganaTable  the Hiragana conversion table.
+     * @param katakanaTable  the Katakana conversion table.
+     */
+    private RomajiSystem(String name, RomajiTable hiraganaTable,
+                         RomajiTable katakanaTable) {
+        this.name = name;
+        this.hiraganaTable = hiraganaTable;
+        this.katakanaTable = katakanaTable;
+    }
+
+    /**
+     * Returns the romanization system of the specified name.
+     * The compiled tables are loaded from the resources once, and
+     * shared by all threads.
+     *
+     * @param name  the name of the system. The name consists of the
+     *              letters, the digits, '_' and '-'.
+     * @return  the RomajiSystem object.
+     * @exception  IllegalArgumentException  if the name is not valid, or
+     *               there is no such system, or the system cannot be
+     *               loaded.
+     */
+    static RomajiSystem forName(String name) {
+        String key = name.toLowerCase();
+        if (!key.matches("[a-z0-9_-]+")) {
+            throw new IllegalArgumentException(
+                "RomajiSystem: Illegal romanization system name: " + name);
+        }
+        synchronized (systems) {
+            RomajiSystem system = (RomajiSystem)systems.get(key);
+            if (system == null) {
+                system = loadResource(key);
+                systems.put(key, system);
+            }
+            return system;
+        }
+    }
+
+    /**
+     * Loads the compiled romanization system from the resources.
+     *
+     * @param name  the name of the system.
+     * @exception  IllegalArgumentException  if there is no such system,
+     *               or the system cannot be loaded.
+     */
+    private static RomajiSystem loadResource(String name) {
+        InputStream in = RomajiSystem.class.getResourceAsStream(
+            "resources/romaji/" + name);
+        if (in == null) {
+            throw new IllegalArgumentException(
+                "RomajiSystem: Unknown romanization system: " + name);
+        }
+        try {
+            try {
+                DataInputStream data =
+                    new DataInputStream(new BufferedInputStream(in));
+                return new RomajiSystem(name, RomajiTable.load(data),
+                                        RomajiTable.load(data));
+            } finally {
+                in.close();
+            }
+        } catch (IOException exception) {
+            throw new IllegalArgumentException(
+                "RomajiSystem: Cannot load " + name + ": " + exception);
+        }
+    }
+
+    /**
+     * Gets the name of this system.
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the Hiragana conversion table.
+     */
+    RomajiTable getHiraganaTable() {
+        return hiraganaTable;
+    }
+
+    /**
+     * Gets the Katakana conversion table.
+     */
+    RomajiTable getKatakanaTable() {
+        return katakanaTable;
+    }
+
+    /**
+     * Compiles the specified romanization system file.
+     *
+     * @param file  the romanization system file.
+     * @return  the RomajiSystem object named after the file.
+     * @exception  IOException  if an error occurred when reading the file,
+     *               or the file has an illegal line.
+     */
+    static RomajiSystem compile(File file) throws IOException {
+        RomajiTable.Builder hiragana = new RomajiTable.Builder();
+        RomajiTable.Builder katakana = new RomajiTable.Builder();
+        RomajiTable.Builder section = null;
+        BufferedReader reader = new BufferedReader(
+            new InputStreamReader(new FileInputStream(file), ENCODING));
+        try {
+            for (int lineNumber = 1;; lineNumber++) {
+                String line = reader.readLine();
+                if (line == null) {
+                    break;
+                }
+                line = line.trim();
+                if (line.length() == 0 || line.charAt(0) == '#') {
+                    continue;
+                }
+                if (line.equals("[hiragana]")) {
+                    section = hiragana;
+                    continue;
+                }
+                if (line.equals("[katakana]")) {
+                    section = katakana;
+                    continue;
+                }
+                StringTokenizer tokens = new StringTokenizer(line);
+                if (section == null || tokens.countTokens() != 2) {
+                    throw new IOException("RomajiSystem: Illegal line: " +
+                                          file + ":" + lineNumber + ": " +
+                                          line);
+                }
+                try {
+                    section.add(tokens.nextToken(), tokens.nextToken());
+                } catch (IllegalArgumentException exception) {
+                    throw new IOException(exception.getMessage() + " at " +
+                                          file + ":" + lineNumber);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return new RomajiSystem(file.getName().toLowerCase(),
+                                hiragana.build(), katakana.build());
+    }
+
+    /**
+     * Saves this system to the specified file.
+     *
+     * @param file  the destination file.
+     * @exception  IOException  if an error occurred when writing to the file.
+     */
+    void save(File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            DataOutputStream data =
+                new DataOutputStream(new BufferedOutputStream(out));
+            hiraganaTable.save(data);
+            katakanaTable.save(data);
+            data.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Compiles the romanization system files into the specified
+     * directory. This program is run when the jar is built.
+     * If a source is a directory, all files in it are compiled.
+     *
+     * @param args command line arguments.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args[0].equals("-h")) {
+            System.err.println(
+                "usage: mkromaji destdir source1 [source2,,,]");
+            System.exit(1);
+        }
+        File destination = new File(args[0]);
+        destination.mkdirs();
+        for (int index = 1; index < args.length; index++) {
+            File source = new File(args[index]);
+            File[] files =
+                source.isDirectory() ? source.listFiles() : new File[] {source};
+            for (int at = 0; at < files.length; at++) {
+                if (files[at].isFile()) {
+                    RomajiSystem system = compile(files[at]);
+                    system.save(new File(destination, system.getName()));
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,479 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is a Kana to Romaji conversion table compiled into
+ * a transition table. Each state has one transition for each character
+ * class, so the longest Kana string is found by one transition per
+ * input character. The tables are compiled when the jar is built, and
+ * loaded by the RomajiSystem class.
+ * <p>
+ * The Romaji to Kana tables of the RomaToKanaConverterImpl have the
+ * same form, with ASCII characters in place of Kana.
+ * <p>
+ * An object of this class is immutable.
+ *
+ * @see RomajiSystem
+ */
+class RomajiTable {
+
+    /** The first character that can be in a Kana table */
+    private static final char KANA_BASE = '\u3000';
+
+    /** The number of characters that can be in a Kana table */
+    private static final int KANA_RANGE = 0x100;
+
+    /** The state before reading any character */
+    static final int START = 0;
+
+    /** The result of a transition that is not in the table */
+    static final int NONE = -1;
+
+    /** Case flag to capitalize the first letter of the romaji */
+    static final int CAPITALIZE = 1;
+
+    /** Case flag to write the romaji in upper case letters */
+    static final int UPPER_CASE = 2;
+
+    private final char base;
+    private final short[] classes;
+    private final int classCount;
+    private final short[] transitions;
+    private final short[] outputs;
+    private final boolean[] hasTransitions;
+    private final String[] romaji;
+    private final String[][] caseRomaji;
+    private final int maxLength;
+
+    /**
+     * Constructs a RomajiTable object.
+     *
+     * @param base  the first character that can be in the table.
+     * @param classes  the character class of each character from base,
+     *                 or 0 if the character is not in the table.
+     * @param classCount  the number of the character classes.
+     * @param transitions  the next state of each state and class,
+     *                     or 0 if there is no transition.
+     * @param outputs  the romaji index of each state, or -1.
+     * @param romaji  the romaji strings.
+     * @param maxLength  the length of the longest Kana string.
+     */
+    private RomajiTable(char base, short[] classes, int classCount,
+                        short[] transitions, short[] outputs, String[] romaji,
+                        int maxLength) {
+        this.base = base;
+        this.classes = classes;
+        this.classCount = classCount;
+        this.transitions = transitions;
+        this.outputs = outputs;
+        this.romaji = romaji;
+        this.maxLength = maxLength;
+        caseRomaji = new String[(CAPITALIZE | UPPER_CASE) + 1][];
+        for (int flags = 0; flags < caseRomaji.length; flags++) {
+            caseRomaji[flags] = new String[romaji.length];
+            for (int index = 0; index < romaji.length; index++) {
+                caseRomaji[flags][index] = toCase(romaji[index], flags);
+            }
+        }
+        int stateCount = outputs.length;
+        hasTransitions = new boolean[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            for (int index = 0; index < classCount; index++) {
+                if (transitions[state * classCount + index] != 0) {
+                    hasTransitions[state] = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the state after reading the specified character.
+     *
+     * @param state  the current state.
+     * @param ch  the character.
+     * @return  the next state, or NONE if there is no transition.
+     */
+    int next(int state, int ch) {
+        int offset = ch - base;
+        if (offset < 0 || offset >= classes.length) {
+            return NONE;
+        }
+        int characterClass = classes[offset];
+        if (characterClass == 0) {
+            return NONE;
+        }
+        int next = transitions[state * classCount + characterClass - 1];
+        return next == 0 ? NONE : next;
+    }
+
+    /**
+     * Returns whether the specified state has any transition.
+     */
+    boolean hasTransitions(int state) {
+        return hasTransitions[state];
+    }
+
+    /**
+     * Gets the romaji index of the specified state.
+     *
+     * @return  the romaji index, or -1 if no Kana string ends at the state.
+     */
+    int getOutput(int state) {
+        return outputs[state];
+    }
+
+    /**
+     * Gets the romaji string of the specified index.
+     */
+    String getRomaji(int index) {
+        return romaji[index];
+    }
+
+    /**
+     * Gets the romaji string of the specified index in the specified case.
+     * The strings of all cases are made when the table is loaded, so no
+     * string is made here.
+     *
+     * @param index  the romaji index.
+     * @param flags  the case flags.
+     * @see #CAPITALIZE
+     * @see #UPPER_CASE
+     */
+    String getRomaji(int index, int flags) {
+        return caseRomaji[flags][index];
+    }
+
+    /**
+     * Changes the case of the romaji string.
+     *
+     * @param romaji  the romaji string.
+     * @param flags  the case flags.
+     */
+    private static String toCase(String romaji, int flags) {
+        String rest = romaji;
+        StringBuffer buffer = new StringBuffer();
+        if ((flags & CAPITALIZE) != 0 && romaji.length() > 0) {
+            buffer.append(Character.toUpperCase(romaji.charAt(0)));
+            rest = romaji.substring(1);
+        }
+        if ((flags & UPPER_CASE) != 0) {
+            rest = rest.toUpperCase();
+        }
+        return buffer.append(rest).toString();
+    }
+
+    /**
+     * Gets the length of the longest Kana string in this table.
+     */
+    int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Reads the longest Kana string in this table from the input object,
+     * and consumes it.
+     *
+     * @param input  the input object.
+     * @return  the romaji index, or -1 if the input does not start with
+     *           any Kana string in this table.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    int read(KanjiInput input) throws IOException {
+        return read(input, false);
+    }
+
+    /**
+     * Reads the longest string in this table from the input object,
+     * and consumes it.
+     *
+     * @param input  the input object.
+     * @param ignoreCase  if true, ASCII upper case letters of the input
+     *                    are read as lower case letters.
+     * @return  the output index, or -1 if the input does not start with
+     *           any string in this table.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    int read(KanjiInput input, boolean ignoreCase) throws IOException {
+        int ch = input.get();
+        if (ch < 0) {
+            return -1;
+        }
+        int state = next(START, ignoreCase ? toLowerCase(ch) : ch);
+        if (state == NONE) {
+            return -1;
+        }
+        int result = outputs[state];
+        int resultLength = 1;
+        int length = 1;
+        while (hasTransitions[state]) {
+            ch = input.more();
+            if (ch < 0) {
+                break;
+            }
+            state = next(state, ignoreCase ? toLowerCase(ch) : ch);
+            if (state == NONE) {
+                break;
+            }
+            ++length;
+            if (outputs[state] >= 0) {
+                result = outputs[state];
+                resultLength = length;
+            }
+        }
+        if (result >= 0) {
+            input.consume(resultLength);
+        }
+        return result;
+    }
+
+    /**
+     * Converts an ASCII upper case letter to lower case.
+     */
+    static int toLowerCase(int ch) {
+        return ch >= 'A' && ch <= 'Z' ? ch + ('a' - 'A') : ch;
+    }
+
+    /**
+     * Puts all strings in this table and their outputs to the specified map.
+     *
+     * @param entries  the map from the strings to the output strings.
+     */
+    void collect(Map entries) {
+        char[] chars = new char[classCount];
+        for (int offset = 0; offset < classes.length; offset++) {
+            if (classes[offset] != 0) {
+                chars[classes[offset] - 1] = (char)(base + offset);
+            }
+        }
+        collect(entries, chars, START, new StringBuffer());
+    }
+
+    /**
+     * Puts the strings that start from the specified state.
+     *
+     * @param entries  the map from the strings to the output strings.
+     * @param chars  the character of each class.
+     * @param state  the state.
+     * @param prefix  the string read to the state.
+     */
+    private void collect(Map entries, char[] chars, int state,
+                         StringBuffer prefix) {
+        if (outputs[state] >= 0) {
+            entries.put(prefix.toString(), romaji[outputs[state]]);
+        }
+        for (int index = 0; index < classCount; index++) {
+            int next = transitions[state * classCount + index];
+            if (next != 0) {
+                prefix.append(chars[index]);
+                collect(entries, chars, next, prefix);
+                prefix.setLength(prefix.length() - 1);
+            }
+        }
+    }
+
+    /**
+     * Saves this table to the specified output.
+     *
+     * @param out  the destination.
+     * @exception  IOException  if an error occurred when writing.
+     * @see #load(DataInput)
+     */
+    void save(DataOutput out) throws IOException {
+        int stateCount = outputs.length;
+        out.writeChar(base);
+        out.writeShort(classes.length);
+        out.writeShort(classCount);
+        out.writeShort(stateCount);
+        out.writeShort(maxLength);
+        for (int index = 0; index < classes.length; index++) {
+            out.writeShort(classes[index]);
+        }
+        for (int index = 0; index < stateCount * classCount; index++) {
+            out.writeShort(transitions[index]);
+        }
+        for (int index = 0; index < stateCount; index++) {
+            out.writeShort(outputs[index]);
+        }
+        out.writeShort(romaji.length);
+        for (int index = 0; index < romaji.length; index++) {
+            out.writeUTF(romaji[index]);
+        }
+    }
+
+    /**
+     * Loads a table saved by the save method.
+     *
+     * @param in  the source.
+     * @return  the table.
+     * @exception  IOException  if an error occurred when reading.
+     * @see #save(DataOutput)
+     */
+    static RomajiTable load(DataInput in) throws IOException {
+        char base = in.readChar();
+        short[] classes = new short[in.readShort()];
+        int classCount = in.readShort();
+        int stateCount = in.readShort();
+        int maxLength = in.readShort();
+        for (int index = 0; index < classes.length; index++) {
+            classes[index] = in.readShort();
+        }
+        short[] transitions = new short[stateCount * classCount];
+        for (int index = 0; index < transitions.length; index++) {
+            transitions[index] = in.readShort();
+        }
+        short[] outputs = new short[stateCount];
+        for (int index = 0; index < stateCount; index++) {
+            outputs[index] = in.readShort();
+        }
+        String[] romaji = new String[in.readShort()];
+        for (int index = 0; index < romaji.length; index++) {
+            romaji[index] = in.readUTF();
+        }
+        return new RomajiTable(base, classes, classCount, transitions, outputs,
+                               romaji, maxLength);
+    }
+
+    /**
+     * This class builds a RomajiTable object. If the same Kana string
+     * is added twice, the last one is used.
+     */
+    static class Builder {
+
+        private final char base;
+        private final int range;
+        private final List nodes = new ArrayList();
+        private final List romajiList = new ArrayList();
+        private final Map romajiIndex = new HashMap();
+        private int maxLength;
+
+        /**
+         * Constructs a Builder object of a Kana table.
+         */
+        Builder() {
+            this(KANA_BASE, KANA_RANGE);
+        }
+
+        /**
+         * Constructs a Builder object of a table whose strings consist of
+         * the specified range of characters.
+         *
+         * @param base  the first character that can be in the table.
+         * @param range  the number of characters that can be in the table.
+         */
+        Builder(char base, int range) {
+            this.base = base;
+            this.range = range;
+            nodes.add(new Node());
+        }
+
+        /**
+         * Adds a conversion.
+         *
+         * @param kana  the Kana string.
+         * @param romaji  the romaji string.
+         */
+        void add(String kana, String romaji) {
+            Node node = (Node)nodes.get(START);
+            int length = kana.length();
+            maxLength = Math.max(maxLength, length);
+            for (int index = 0; index < length; index++) {
+                char ch = kana.charAt(index);
+                if (ch < base || ch >= base + range) {
+                    throw new IllegalArgumentException(
+                        "RomajiTable: Illegal character: " + kana);
+                }
+                Character key = Character.valueOf(ch);
+                Integer next = (Integer)node.children.get(key);
+                if (next == null) {
+                    next = Integer.valueOf(nodes.size());
+                    nodes.add(new Node());
+                    node.children.put(key, next);
+                }
+                node = (Node)nodes.get(next.intValue());
+            }
+            Integer output = (Integer)romajiIndex.get(romaji);
+            if (output == null) {
+                output = Integer.valueOf(romajiList.size());
+                romajiList.add(romaji);
+                romajiIndex.put(romaji, output);
+            }
+            node.output = output.intValue();
+        }
+
+        /**
+         * Compiles the added conversions into a RomajiTable object.
+         */
+        RomajiTable build() {
+            short[] classes = new short[range];
+            int classCount = 0;
+            int stateCount = nodes.size();
+            for (int state = 0; state < stateCount; state++) {
+                Node node = (Node)nodes.get(state);
+                Iterator keys = node.children.keySet().iterator();
+                while (keys.hasNext()) {
+                    char ch = ((Character)keys.next()).charValue();
+                    if (classes[ch - base] == 0) {
+                        classes[ch - base] = (short)++classCount;
+                    }
+                }
+            }
+            if (stateCount > Short.MAX_VALUE) {
+                throw new IllegalStateException(
+                    "RomajiTable: Too many states: " + stateCount);
+            }
+            short[] transitions = new short[stateCount * classCount];
+            short[] outputs = new short[stateCount];
+            for (int state = 0; state < stateCount; state++) {
+                Node node = (Node)nodes.get(state);
+                outputs[state] = (short)node.output;
+                Iterator keys = node.children.keySet().iterator();
+                while (keys.hasNext()) {
+                    Character key = (Character)keys.next();
+                    int characterClass = classes[key.charValue() - base];
+                    transitions[state * classCount + characterClass - 1] =
+                        ((Integer)node.children.get(key)).shortValue();
+                }
+            }
+            String[] romaji =
+                (String[])romajiList.toArray(new String[romajiList.size()]);
+            return new RomajiTable(base, classes, classCount, transitions,
+                                   outputs, romaji, maxLength);
+        }
+
+    }
+
+    /**
+     * A state of the table being built.
+     */
+    private static class Node {
+
+        final Map children = new HashMap();
+        int output = -1;
+
+    }
+
+}
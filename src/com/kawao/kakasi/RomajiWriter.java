@@ -0,0 +1,165 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.io.Writer;
+import java.io.IOException;
+
+/**
+ * A KanaWriter class that converts Hiragana to romaji.
+ * Each character is fed to the RomajiTable as it is written, and
+ * only the characters of a Kana string that may still become longer
+ * are kept.
+ * <p>
+ * The result is the same as the KanaToRomaConverterImpl converting the
+ * whole word at once, including the capitalize mode that capitalizes
+ * the first romaji of the word and the first romaji after a character
+ * that is not converted.
+ *
+ * @see KanaToRomaConverterImpl#convertHiragana(KanjiInput, Writer)
+ */
+class RomajiWriter extends KanaWriter {
+
+    private final KanaToRomaConverterImpl kanaToRomaConverterImpl;
+
+    private RomajiTable table;
+    private int flags;
+
+    private char[] pending = new char[0];
+    private int pendingLength;
+    private int state;
+    private int acceptIndex;
+    private int acceptLength;
+    private boolean runStart;
+
+    /**
+     * Constructs a RomajiWriter object.
+     *
+     * @param kanaToRomaConverterImpl  the converter that holds the
+     *                                 romanization system and modes.
+     */
+    RomajiWriter(KanaToRomaConverterImpl kanaToRomaConverterImpl) {
+        this.kanaToRomaConverterImpl = kanaToRomaConverterImpl;
+    }
+
+    /**
+     * Starts the conversion of a word. The romanization system and
+     * modes are read here, and are used until the end of the word.
+     *
+     * @param newOutput  the destination writer.
+     */
+    void start(Writer newOutput) {
+        super.start(newOutput);
+        table = kanaToRomaConverterImpl.getSystem().getHiraganaTable();
+        flags = kanaToRomaConverterImpl.getFlags();
+        if (pending.length < table.getMaxLength()) {
+            pending = new char[table.getMaxLength()];
+        }
+        pendingLength = 0;
+        runStart = true;
+    }
+
+    /**
+     * Writes the characters that are kept for the following characters,
+     * and ends the conversion of the word.
+     *
+     * @exception  IOException  if an I/O error occurred.
+     */
+    void finish() throws IOException {
+        while (pendingLength > 0) {
+            resolve();
+        }
+        runStart = true;
+    }
+
+    /**
+     * Write a single character.
+     *
+     * @param c  int specifying a character to be written.
+     * @exception  IOException  If an I/O error occurs
+     */
+    public void write(int c) throws IOException {
+        char ch = (char)c;
+        while (true) {
+            if (pendingLength == 0) {
+                int next = table.next(RomajiTable.START, ch);
+                if (next == RomajiTable.NONE) {
+                    KanjiOutput.writeMarkup(output, ch);
+                    runStart = true;
+                    return;
+                }
+                state = next;
+                acceptLength = 0;
+            } else {
+                int next = table.next(state, ch);
+                if (next == RomajiTable.NONE) {
+                    resolve();
+                    continue;
+                }
+                state = next;
+            }
+            pending[pendingLength++] = ch;
+            if (table.getOutput(state) >= 0) {
+                acceptIndex = table.getOutput(state);
+                acceptLength = pendingLength;
+            }
+            if (!table.hasTransitions(state)) {
+                resolve();
+            }
+            return;
+        }
+    }
+
+    /**
+     * Writes the longest Kana string of the kept characters, and feeds
+     * the rest of them again. If no Kana string is found, the first
+     * character is written as it is.
+     * <p>
+     * The characters fed again are stored to the lower part of the same
+     * array, where the characters already read are.
+     *
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private void resolve() throws IOException {
+        int length = pendingLength;
+        int consumed = acceptLength;
+        if (consumed > 0) {
+            writeRomaji(acceptIndex);
+        } else {
+            KanjiOutput.writeMarkup(output, pending[0]);
+            runStart = true;
+            consumed = 1;
+        }
+        pendingLength = 0;
+        for (int index = consumed; index < length; index++) {
+            write(pending[index]);
+        }
+    }
+
+    /**
+     * Writes the romaji string in the current modes.
+     *
+     * @param index  the romaji index.
+     * @exception  IOException  if an I/O error occurred.
+     */
+    private void writeRomaji(int index) throws IOException {
+        int caseFlags =
+            runStart ? flags : flags & ~KanaToRomaConverterImpl.CAPITALIZE;
+        output.write(table.getRomaji(index, caseFlags));
+        runStart = false;
+    }
+
+}
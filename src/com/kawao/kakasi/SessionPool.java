@@ -0,0 +1,86 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of the sessions of an engine that are not used by anyone.
+ * The sessions are reused when a task does not run on a thread of its
+ * own, like a virtual thread, where the session of each thread would
+ * never be reused. At most the specified number of idle sessions are
+ * kept; the sessions opened for a burst of tasks beyond that are
+ * dropped when returned.
+ *
+ * @see KakasiEngine#openSession()
+ */
+class SessionPool {
+
+    private final KakasiEngine engine;
+    private final int maxIdleCount;
+    private final ConcurrentLinkedQueue<KakasiSession> sessions =
+        new ConcurrentLinkedQueue<KakasiSession>();
+    // never less than the number of the sessions in the queue
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /**
+     * Constructs a SessionPool object.
+     *
+     * @param engine  the engine that opens the sessions.
+     * @param maxIdleCount  the maximum number of the idle sessions.
+     */
+    SessionPool(KakasiEngine engine, int maxIdleCount) {
+        this.engine = engine;
+        this.maxIdleCount = maxIdleCount;
+    }
+
+    /**
+     * Gets the engine that opens the sessions.
+     */
+    KakasiEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Takes an idle session, or opens a new one if there is none.
+     *
+     * @return  the session.
+     */
+    KakasiSession borrowSession() {
+        KakasiSession session = sessions.poll();
+        if (session == null) {
+            return engine.openSession();
+        }
+        idleCount.decrementAndGet();
+        return session;
+    }
+
+    /**
+     * Returns the session to the pool, or drops it if the pool is full.
+     * A session whose conversion failed must not be returned.
+     *
+     * @param session  the session.
+     */
+    void returnSession(KakasiSession session) {
+        if (idleCount.incrementAndGet() > maxIdleCount) {
+            idleCount.decrementAndGet();
+            return;
+        }
+        sessions.offer(session);
+    }
+
+}
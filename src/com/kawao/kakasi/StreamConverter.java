@@ -0,0 +1,150 @@
+/*
+ * KAKASI/JAVA
+ *  Copyright (C) 2002-2003  KAWAO, Tomoyuki (kawao@kawao.com)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+
+package com.kawao.kakasi;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * This class converts the elements of a stream. Each element is
+ * converted with a session borrowed from the engine, so the threads of
+ * a parallel stream never wait for each other, and the sessions are
+ * reused by the later streams of the same engine.
+ *
+ * @see Kakasi#convertStream(java.util.stream.Stream)
+ * @see Kakasi#batchCollector()
+ */
+class StreamConverter implements Function<CharSequence, String> {
+
+    private final KakasiEngine engine;
+
+    /**
+     * Constructs a StreamConverter object.
+     *
+     * @param engine  the engine that converts the elements.
+     */
+    StreamConverter(KakasiEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Converts the specified CharSequence object to a string.
+     *
+     * @param string  the CharSequence object.
+     * @return  the converted string.
+     * @exception  UncheckedIOException  if an I/O error occurred.
+     */
+    public String apply(CharSequence string) {
+        StringBuilder builder = new StringBuilder();
+        convert(string, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Converts the specified CharSequence object with a session borrowed
+     * from the engine, and appends the result to the builder.
+     *
+     * @param string  the CharSequence object.
+     * @param builder  the StringBuilder object.
+     * @exception  UncheckedIOException  if an I/O error occurred.
+     */
+    private void convert(CharSequence string, StringBuilder builder) {
+        SessionPool sessions = engine.getSessionPool();
+        KakasiSession session = sessions.borrowSession();
+        try {
+            session.convert(string, builder);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        sessions.returnSession(session);
+    }
+
+    /**
+     * Creates a collector that converts the elements and collects the
+     * results to a KanjiBatch object in the encounter order.
+     */
+    Collector<CharSequence, ?, KanjiBatch> collector() {
+        return Collector.of(
+            new Supplier<Part>() {
+                public Part get() {
+                    return new Part();
+                }
+            },
+            new BiConsumer<Part, CharSequence>() {
+                public void accept(Part part, CharSequence string) {
+                    part.add(string);
+                }
+            },
+            new BinaryOperator<Part>() {
+                public Part apply(Part left, Part right) {
+                    left.addAll(right);
+                    return left;
+                }
+            },
+            new Function<Part, KanjiBatch>() {
+                public KanjiBatch apply(Part part) {
+                    return part.toBatch();
+                }
+            });
+    }
+
+    /**
+     * The results collected by a thread.
+     */
+    private class Part {
+
+        private final StringBuilder text = new StringBuilder();
+        private int[] offsets = new int[16];
+        private int size;
+
+        void add(CharSequence string) {
+            convert(string, text);
+            ensureCapacity(size + 1);
+            offsets[++size] = text.length();
+        }
+
+        void addAll(Part other) {
+            int base = text.length();
+            text.append(other.text);
+            ensureCapacity(size + other.size);
+            for (int index = 1; index <= other.size; index++) {
+                offsets[++size] = base + other.offsets[index];
+            }
+        }
+
+        KanjiBatch toBatch() {
+            int[] batchOffsets = new int[size + 1];
+            System.arraycopy(offsets, 0, batchOffsets, 0, size + 1);
+            return new KanjiBatch(text, batchOffsets);
+        }
+
+        private void ensureCapacity(int newSize) {
+            if (newSize >= offsets.length) {
+                int[] newOffsets =
+                    new int[Math.max(newSize + 1, offsets.length * 2)];
+                System.arraycopy(offsets, 0, newOffsets, 0, size + 1);
+                offsets = newOffsets;
+            }
+        }
+
+    }
+
+}